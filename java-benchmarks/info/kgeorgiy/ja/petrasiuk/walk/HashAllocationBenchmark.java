@@ -0,0 +1,108 @@
+package info.kgeorgiy.ja.petrasiuk.walk;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Measures heap allocation per hashed file, for the hashing core on the calling thread
+ * and for the whole pipeline including hashing threads and the output writer.
+ * Pipeline numbers are marginal: the allocation of a run over half of the files is subtracted,
+ * so one-time setup such as thread and buffer creation is excluded.
+ * <p>
+ * Kept outside the module sources and compiled together with {@code java-solutions} on the class path,
+ * as it needs the package-private internals of the walk tools.
+ * <p>
+ * Usage: {@code HashAllocationBenchmark [files [fileSize]]}.
+ */
+final class HashAllocationBenchmark {
+    private static final int repetitions = 5;
+
+    private static final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private HashAllocationBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 4096;
+        Path directory = Files.createTempDirectory("walk-allocation");
+        try {
+            List<Path> files = new ArrayList<>(count);
+            byte[] content = new byte[size];
+            for (int i = 0; i < count; i++) {
+                content[i % size] = (byte) i;
+                files.add(Files.write(directory.resolve("file" + i), content));
+            }
+            Path input = directory.resolve("input");
+            Path output = directory.resolve("output");
+
+            for (HashAlgorithm algorithm : HashAlgorithm.builtIn) {
+                System.out.printf("%s core: %.1f B/file%n", algorithm.name(), core(files, algorithm));
+                for (int threadCount : new int[]{1, 4}) {
+                    double perFile = pipeline(files, input, output, algorithm, threadCount);
+                    System.out.printf("%s pipeline, %d threads: %.1f B/file%n", algorithm.name(), threadCount, perFile);
+                }
+            }
+        } finally {
+            try (Stream<Path> paths = Files.walk(directory)) {
+                for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+
+    private static double core(List<Path> files, HashAlgorithm algorithm) throws IOException {
+        try (WalkMetrics metrics = new WalkMetrics()) {
+            long best = Long.MAX_VALUE;
+            for (int repetition = 0; repetition < repetitions; repetition++) {
+                long before = threads.getCurrentThreadAllocatedBytes();
+                for (Path file : files) {
+                    Walk.hashFile(file, algorithm, metrics);
+                }
+                best = Math.min(best, threads.getCurrentThreadAllocatedBytes() - before);
+            }
+            return (double) best / files.size();
+        }
+    }
+
+    private static double pipeline(List<Path> files, Path input, Path output, HashAlgorithm algorithm, int threadCount)
+            throws IOException {
+        int half = files.size() / 2;
+        long full = Long.MAX_VALUE;
+        long partial = Long.MAX_VALUE;
+        for (int repetition = 0; repetition < repetitions; repetition++) {
+            full = Math.min(full, run(files, input, output, algorithm, threadCount));
+            partial = Math.min(partial, run(files.subList(0, half), input, output, algorithm, threadCount));
+        }
+        return (double) (full - partial) / (files.size() - half);
+    }
+
+    private static long run(List<Path> files, Path input, Path output, HashAlgorithm algorithm, int threadCount)
+            throws IOException {
+        WalkOptions options = WalkOptions.parse(new String[]{
+                input.toString(), output.toString(),
+                "--threads", Integer.toString(threadCount),
+                "--algorithm", algorithm.name()
+        });
+        long before = threads.getTotalThreadAllocatedBytes();
+        try (
+                WalkMetrics metrics = new WalkMetrics();
+                ResultWriter writer = new ResultWriter(output);
+                HashPipeline pipeline = new HashPipeline(writer, options, null, metrics)
+        ) {
+            for (Path file : files) {
+                pipeline.submit(file);
+            }
+            pipeline.finish();
+        }
+        return threads.getTotalThreadAllocatedBytes() - before;
+    }
+}
@@ -0,0 +1,435 @@
+package info.kgeorgiy.ja.petrasiuk.crawler;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only on-disk log of a crawl: scheduled URLs with their remaining depth, download outcomes
+ * and the depths pages have propagated their links with. Links themselves are not recorded, so the log grows
+ * with the number of pages rather than links.
+ * Every record is framed with its length and CRC, so a record torn by a crash is detected on replay and cut off.
+ * Records are buffered and forced to disk at most {@value #forceIntervalMillis} ms after they are appended,
+ * by a timer if no later append does it, and on {@link #close()}.
+ * <p>
+ * Once the log outgrows both the checkpoint size and twice its last checkpoint, it is replaced by a checkpoint:
+ * a new log holding the visited fingerprints, the results so far and the pages still in progress,
+ * written aside and atomically moved over the old one. Appends wait while a checkpoint is written.
+ * Write failures do not interrupt the crawl, the first of them is rethrown by {@link #close()}.
+ */
+class CrawlJournal implements Closeable {
+    private static final int magic = 0x43524a4c;
+    private static final int version = 2;
+    private static final long forceIntervalMillis = 1000;
+    private static final int visitedPerRecord = 4096;
+
+    private static final byte SCHEDULED = 1;
+    private static final byte DOWNLOADED = 2;
+    private static final byte FAILED = 3;
+    private static final byte PROPAGATED = 4;
+    private static final byte VISITED = 5;
+
+    /**
+     * Receiver of replayed records.
+     */
+    interface Replay {
+        void scheduled(String url, int depth);
+
+        void downloaded(String url);
+
+        void failed(String url, String message);
+
+        void propagated(String url, int depth);
+
+        void visited(long fingerprint, int depth);
+    }
+
+    /**
+     * Source of the crawl state written to checkpoints.
+     */
+    interface State {
+        void write(Checkpoint checkpoint);
+    }
+
+    private final Path file;
+    private final String url;
+    private final int depth;
+    private final long checkpointBytes;
+    private final State state;
+    private FileChannel channel;
+    private DataOutputStream out;
+    private long size;
+    private long checkpointAt;
+    private long lastForce = System.nanoTime();
+    private boolean dirty;
+    private IOException failure;
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "crawl-journal-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private CrawlJournal(Path file, String url, int depth, long checkpointBytes, State state, FileChannel channel) {
+        this.file = file;
+        this.url = url;
+        this.depth = depth;
+        this.checkpointBytes = checkpointBytes;
+        this.state = state;
+        this.channel = channel;
+        this.out = output(channel);
+        this.checkpointAt = checkpointBytes;
+    }
+
+    /**
+     * Opens the journal of the crawl starting at {@code url} with the specified depth, creating it if necessary.
+     * Records of an existing journal are passed to {@code replay}, and new records are appended after them.
+     * Checkpoints are taken from {@code state} once the log grows past {@code checkpointBytes}.
+     *
+     * @throws IllegalArgumentException if the journal belongs to another crawl
+     */
+    static CrawlJournal open(Path file, String url, int depth, long checkpointBytes, State state, Replay replay)
+            throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            CrawlJournal journal;
+            if (channel.size() == 0) {
+                journal = new CrawlJournal(file, url, depth, checkpointBytes, state, channel);
+                writeHeader(journal.out, url, depth);
+                journal.force();
+            } else {
+                long end = replay(channel, file, url, depth, replay);
+                channel.truncate(end);
+                channel.position(end);
+                journal = new CrawlJournal(file, url, depth, checkpointBytes, state, channel);
+            }
+            journal.size = channel.size();
+            journal.checkpointAt = Math.max(checkpointBytes, 2 * journal.size);
+            journal.flusher.scheduleWithFixedDelay(journal::forceIfDirty,
+                    forceIntervalMillis, forceIntervalMillis, TimeUnit.MILLISECONDS);
+            return journal;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static DataOutputStream output(FileChannel channel) {
+        return new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+    }
+
+    private static void writeHeader(DataOutputStream out, String url, int depth) throws IOException {
+        out.writeInt(magic);
+        out.writeInt(version);
+        writeString(out, url);
+        out.writeInt(depth);
+    }
+
+    private static long replay(FileChannel channel, Path file, String url, int depth, Replay replay) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(0)), 1 << 16));
+        if (in.readInt() != magic || in.readInt() != version) {
+            throw new IOException("Not a crawl journal: " + file);
+        }
+        String journalUrl = readString(in);
+        if (!journalUrl.equals(url) || in.readInt() != depth) {
+            throw new IllegalArgumentException("Journal " + file + " belongs to another crawl of " + journalUrl);
+        }
+
+        long end = 8 + 4 + journalUrl.getBytes(StandardCharsets.UTF_8).length + 4;
+        CRC32 crc = new CRC32();
+        while (true) {
+            byte[] record;
+            try {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if (length < 0 || length > channel.size() - end) {
+                    break;
+                }
+                record = in.readNBytes(length);
+                crc.reset();
+                crc.update(record);
+                if (record.length != length || (int) crc.getValue() != checksum) {
+                    break;
+                }
+            } catch (EOFException e) {
+                break;
+            }
+            apply(new DataInputStream(new ByteArrayInputStream(record)), replay);
+            end += 8 + record.length;
+        }
+        return end;
+    }
+
+    private static void apply(DataInputStream record, Replay replay) throws IOException {
+        byte type = record.readByte();
+        switch (type) {
+            case SCHEDULED -> replay.scheduled(readString(record), record.readInt());
+            case DOWNLOADED -> replay.downloaded(readString(record));
+            case FAILED -> replay.failed(readString(record), readString(record));
+            case PROPAGATED -> replay.propagated(readString(record), record.readInt());
+            case VISITED -> {
+                int count = record.readInt();
+                for (int i = 0; i < count; i++) {
+                    replay.visited(record.readLong(), record.readInt());
+                }
+            }
+            default -> throw new IOException("Unknown journal record type " + type);
+        }
+    }
+
+    void scheduled(String url, int depth) {
+        append(record(SCHEDULED, out -> {
+            writeString(out, url);
+            out.writeInt(depth);
+        }));
+    }
+
+    void downloaded(String url) {
+        append(record(DOWNLOADED, out -> writeString(out, url)));
+    }
+
+    void failed(String url, IOException e) {
+        append(failedRecord(url, String.valueOf(e.getMessage())));
+    }
+
+    /**
+     * Records that every link of the page has been scheduled with the specified depth of the page.
+     */
+    void propagated(String url, int depth) {
+        append(propagatedRecord(url, depth));
+    }
+
+    private static byte[] propagatedRecord(String url, int depth) {
+        return record(PROPAGATED, out -> {
+            writeString(out, url);
+            out.writeInt(depth);
+        });
+    }
+
+    private static byte[] failedRecord(String url, String message) {
+        return record(FAILED, out -> {
+            writeString(out, url);
+            writeString(out, message);
+        });
+    }
+
+    private interface Body {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static byte[] record(byte type, Body body) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream record = new DataOutputStream(bytes)) {
+            record.writeByte(type);
+            body.write(record);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static int writeRecord(DataOutputStream out, byte[] record) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        out.writeInt(record.length);
+        out.writeInt((int) crc.getValue());
+        out.write(record);
+        return 8 + record.length;
+    }
+
+    private synchronized void append(byte[] record) {
+        if (failure != null) {
+            return;
+        }
+        try {
+            size += writeRecord(out, record);
+            dirty = true;
+            if (size >= checkpointAt) {
+                checkpoint();
+            } else if (System.nanoTime() - lastForce >= TimeUnit.MILLISECONDS.toNanos(forceIntervalMillis)) {
+                force();
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    /**
+     * Writes the state to a new log next to the journal and moves it over the journal.
+     * If anything fails before the move, the old log stays in place.
+     */
+    private void checkpoint() throws IOException {
+        Path next = file.resolveSibling(file.getFileName() + ".checkpoint");
+        FileChannel nextChannel = FileChannel.open(next,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        DataOutputStream nextOut = output(nextChannel);
+        try {
+            writeHeader(nextOut, url, depth);
+            Checkpoint checkpoint = new Checkpoint(nextOut);
+            state.write(checkpoint);
+            checkpoint.flushVisited();
+            nextOut.flush();
+            nextChannel.force(false);
+            try {
+                Files.move(next, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(next, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | UncheckedIOException e) {
+            nextChannel.close();
+            Files.deleteIfExists(next);
+            throw e instanceof UncheckedIOException unchecked ? unchecked.getCause() : (IOException) e;
+        }
+
+        FileChannel old = channel;
+        channel = nextChannel;
+        out = nextOut;
+        size = nextChannel.size();
+        checkpointAt = Math.max(checkpointBytes, 2 * size);
+        lastForce = System.nanoTime();
+        dirty = false;
+        old.close();
+    }
+
+    /**
+     * Receiver of the crawl state written to a checkpoint. Replaying a checkpoint restores
+     * the visited fingerprints, results and errors, and restarts pages scheduled without being propagated.
+     */
+    final class Checkpoint {
+        private final DataOutputStream out;
+        private final ByteArrayOutputStream visitedBytes = new ByteArrayOutputStream();
+        private final DataOutputStream visited = new DataOutputStream(visitedBytes);
+        private int visitedCount;
+
+        private Checkpoint(DataOutputStream out) {
+            this.out = out;
+        }
+
+        void visited(long fingerprint, int depth) {
+            try {
+                visited.writeLong(fingerprint);
+                visited.writeInt(depth);
+                if (++visitedCount == visitedPerRecord) {
+                    flushVisited();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void scheduled(String url, int depth) {
+            write(record(SCHEDULED, out -> {
+                writeString(out, url);
+                out.writeInt(depth);
+            }));
+        }
+
+        void downloaded(String url) {
+            write(record(DOWNLOADED, out -> writeString(out, url)));
+        }
+
+        void failed(String url, String message) {
+            write(failedRecord(url, message));
+        }
+
+        void propagated(String url, int depth) {
+            write(propagatedRecord(url, depth));
+        }
+
+        private void flushVisited() throws IOException {
+            if (visitedCount > 0) {
+                byte[] entries = visitedBytes.toByteArray();
+                writeRecord(out, record(VISITED, out -> {
+                    out.writeInt(visitedCount);
+                    out.write(entries);
+                }));
+                visitedBytes.reset();
+                visitedCount = 0;
+            }
+        }
+
+        private void write(byte[] record) {
+            try {
+                flushVisited();
+                writeRecord(out, record);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private void force() throws IOException {
+        out.flush();
+        channel.force(false);
+        lastForce = System.nanoTime();
+        dirty = false;
+    }
+
+    /**
+     * Forces the records appended since the last force, so a stalled crawl does not keep them buffered.
+     */
+    private synchronized void forceIfDirty() {
+        if (failure != null || !dirty) {
+            return;
+        }
+        try {
+            force();
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Corrupted journal string of length " + length);
+        }
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length != length) {
+            throw new EOFException();
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Forces all records to disk and closes the journal.
+     *
+     * @throws IOException if this or any earlier write has failed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        flusher.shutdownNow();
+        try {
+            if (failure == null) {
+                force();
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            if (failure == null) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -1,14 +1,125 @@
 package info.kgeorgiy.ja.petrasiuk.crawler;
 
-import java.util.concurrent.Semaphore;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Per-host download scheduler: waiting tasks start in FIFO order while the host is under its concurrency limit
+ * and the {@link PolitenessPolicy} interval since the previous start has passed.
+ * When only the interval holds tasks back, a wake-up is scheduled on the timer.
+ * The limit and timings are kept in a {@link State} that outlives the limiter, which is dropped once idle.
+ * Not thread-safe, all calls are made inside the map operations for the host.
+ */
 class HostLimiter {
-    final Semaphore semaphore;
-    final AtomicInteger users = new AtomicInteger();
+    private final int maxActive;
+    private final PolitenessPolicy policy;
+    private final State state;
+    private final Executor executor;
+    private final ScheduledExecutorService timer;
+    private final Runnable wakeUp;
+    private final Queue<Runnable> waiting = new ArrayDeque<>();
+    private int active;
+    private boolean wakeUpScheduled;
 
-    HostLimiter(int permits) {
-        this.semaphore = new Semaphore(permits);
+    /**
+     * Politeness state of a host: the adaptive concurrency limit, the time it was last decreased,
+     * the earliest next download start and the time the host became idle.
+     * Only used by the limiter registered for the host, inside the map operations for it.
+     */
+    static final class State {
+        private double limit;
+        private long nextStart = System.nanoTime();
+        private long lastDecrease;
+        private long idleSince = nextStart;
+
+        State(int maxActive, PolitenessPolicy policy) {
+            this.limit = policy.adaptive() ? 1 : maxActive;
+            this.lastDecrease = nextStart - policy.targetLatency().toNanos();
+        }
+
+        /**
+         * Checks whether the host has been idle and unrestricted by the interval for at least {@code idleNanos}.
+         */
+        boolean isExpired(long now, long idleNanos) {
+            return now - idleSince >= idleNanos && now - nextStart >= 0;
+        }
+    }
+
+    /**
+     * @param state  the politeness state of the host
+     * @param timer  the timer of wake-ups, or {@code null} if the policy has no interval
+     * @param wakeUp the action calling {@link #wake()} inside the map operation for the host
+     */
+    HostLimiter(int maxActive, PolitenessPolicy policy, State state, Executor executor,
+                ScheduledExecutorService timer, Runnable wakeUp) {
+        this.maxActive = maxActive;
+        this.policy = policy;
+        this.state = state;
+        this.executor = executor;
+        this.timer = timer;
+        this.wakeUp = wakeUp;
+    }
+
+    void submit(Runnable task) {
+        waiting.add(task);
+        settle();
     }
-}
 
+    /**
+     * Releases the permit of a finished task and adapts the concurrency limit to its outcome.
+     *
+     * @param latency the download time in nanoseconds
+     * @param failed  whether the download has failed
+     * @return whether the limiter has to stay registered for the host
+     */
+    boolean release(long latency, boolean failed) {
+        active--;
+        if (policy.adaptive()) {
+            long target = policy.targetLatency().toNanos();
+            long now = System.nanoTime();
+            if (failed || latency > target) {
+                if (now - state.lastDecrease >= target) {
+                    state.limit = Math.max(1, state.limit / 2);
+                    state.lastDecrease = now;
+                }
+            } else {
+                state.limit = Math.min(maxActive, state.limit + 1 / state.limit);
+            }
+        }
+        return settle();
+    }
+
+    /**
+     * Handles a scheduled wake-up.
+     *
+     * @return whether the limiter has to stay registered for the host
+     */
+    boolean wake() {
+        wakeUpScheduled = false;
+        return settle();
+    }
+
+    /**
+     * Starts the waiting tasks allowed to start now, and schedules a wake-up if the interval holds them back.
+     */
+    private boolean settle() {
+        long now = System.nanoTime();
+        while (!waiting.isEmpty() && active < (int) state.limit && now - state.nextStart >= 0) {
+            active++;
+            state.nextStart = now + policy.intervalNanos();
+            executor.execute(waiting.poll());
+        }
+        if (!wakeUpScheduled && !waiting.isEmpty() && active < (int) state.limit && now - state.nextStart < 0) {
+            wakeUpScheduled = true;
+            timer.schedule(wakeUp, state.nextStart - now, TimeUnit.NANOSECONDS);
+        }
+        if (active > 0 || !waiting.isEmpty() || wakeUpScheduled) {
+            return true;
+        }
+        state.idleSince = now;
+        return false;
+    }
+}
@@ -0,0 +1,42 @@
+package info.kgeorgiy.ja.petrasiuk.crawler;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-host politeness settings of {@link WebCrawler}.
+ * Download starts for a host are spaced by the longer of {@code minDelay} and {@code 1 / requestsPerSecond}.
+ * With a positive target latency, concurrency of a host adapts between one and the per-host limit:
+ * it grows by one per window of successful downloads and halves, at most once per target latency,
+ * when a download fails or takes longer than the target.
+ *
+ * @param requestsPerSecond the maximal rate of download starts for a host, or {@code 0} for no limit
+ * @param minDelay          the minimal delay between consecutive download starts for a host
+ * @param targetLatency     the download latency above which concurrency is decreased,
+ *                          or {@link Duration#ZERO} to always allow the per-host limit
+ */
+public record PolitenessPolicy(double requestsPerSecond, Duration minDelay, Duration targetLatency) {
+    /**
+     * Policy without rate limits and adaptation, only the per-host concurrency limit applies.
+     */
+    public static final PolitenessPolicy UNLIMITED = new PolitenessPolicy(0, Duration.ZERO, Duration.ZERO);
+
+    public PolitenessPolicy {
+        Objects.requireNonNull(minDelay, "minDelay must not be null");
+        Objects.requireNonNull(targetLatency, "targetLatency must not be null");
+        if (!(requestsPerSecond >= 0) || minDelay.isNegative() || targetLatency.isNegative()) {
+            throw new IllegalArgumentException("Invalid politeness policy: " + requestsPerSecond + ", "
+                    + minDelay + ", " + targetLatency);
+        }
+    }
+
+    long intervalNanos() {
+        long rateInterval = requestsPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond) : 0;
+        return Math.max(minDelay.toNanos(), rateInterval);
+    }
+
+    boolean adaptive() {
+        return targetLatency.isPositive();
+    }
+}
@@ -0,0 +1,243 @@
+package info.kgeorgiy.ja.petrasiuk.crawler;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Set of visited URLs with the best remaining depth of each, keyed by 64-bit URL fingerprints.
+ * A concurrent Bloom filter answers most lookups of new URLs without touching the exact store,
+ * an open-addressing table of fingerprints and depths kept off-heap in direct buffers.
+ * The false-positive rate of the filter only affects speed; exactness is limited by fingerprint collisions,
+ * the first of which is expected after about {@code 2^32} URLs.
+ */
+class VisitedSet {
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final int SEGMENTS = 64;
+    private static final int SLOT = 16;
+    private static final int INITIAL_SLOTS = 1 << 10;
+
+    /**
+     * Receiver of the entries of the set.
+     */
+    interface Visitor {
+        void visit(long fingerprint, int depth);
+    }
+
+    private final AtomicLongArray bloom;
+    private final long bloomBits;
+    private final int hashes;
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    /**
+     * Creates an empty set with the Bloom filter sized for the expected number of URLs.
+     *
+     * @param expected          the expected number of URLs
+     * @param falsePositiveRate the tolerated false-positive rate of the Bloom filter, between 0 and 1
+     */
+    VisitedSet(long expected, double falsePositiveRate) {
+        long bits = (long) Math.ceil(-expected * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bloom = new AtomicLongArray((int) Math.min((bits + 63) / 64, Integer.MAX_VALUE - 8));
+        this.bloomBits = bloom.length() * 64L;
+        this.hashes = (int) Math.max(1, Math.round((double) bloomBits / expected * Math.log(2)));
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Computes the fingerprint of a URL. Fingerprints are never zero.
+     */
+    static long fingerprint(String url) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < url.length(); i++) {
+            hash = (hash ^ url.charAt(i)) * 0x100000001b3L;
+        }
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        hash ^= hash >>> 31;
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * Raises the depth recorded for the fingerprint to at least {@code depth}, adding it if necessary.
+     *
+     * @return the depth recorded before the call, or {@code 0} if the fingerprint was not in the set
+     */
+    int raise(long fingerprint, int depth) {
+        Segment segment = segment(fingerprint);
+        if (mightContain(fingerprint)) {
+            int current = segment.peek(fingerprint);
+            if (current >= depth) {
+                return current;
+            }
+        }
+        synchronized (segment) {
+            int previous = segment.raise(fingerprint, depth);
+            if (previous == 0) {
+                addToBloom(fingerprint);
+            }
+            return previous;
+        }
+    }
+
+    /**
+     * Returns the depth recorded for the fingerprint, or {@code 0} if it is not in the set.
+     * Synchronizes with concurrent {@link #raise} calls for the same fingerprint.
+     */
+    int depth(long fingerprint) {
+        Segment segment = segment(fingerprint);
+        synchronized (segment) {
+            return segment.peek(fingerprint);
+        }
+    }
+
+    /**
+     * Passes every fingerprint with its depth to the visitor. Each segment is locked while it is visited,
+     * so concurrent {@link #raise} calls are either seen or happen after their segment has been visited.
+     */
+    void forEach(Visitor visitor) {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.forEach(visitor);
+            }
+        }
+    }
+
+    /**
+     * Removes every entry, keeping the allocated memory for reuse.
+     * Must not be called concurrently with other operations on the set.
+     */
+    void clear() {
+        for (int i = 0; i < bloom.length(); i++) {
+            bloom.set(i, 0);
+        }
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    private Segment segment(long fingerprint) {
+        return segments[(int) (fingerprint >>> 58)];
+    }
+
+    private boolean mightContain(long fingerprint) {
+        long step = (fingerprint >>> 32) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Long.remainderUnsigned(fingerprint + i * step, bloomBits);
+            if ((bloom.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void addToBloom(long fingerprint) {
+        long step = (fingerprint >>> 32) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Long.remainderUnsigned(fingerprint + i * step, bloomBits);
+            long mask = 1L << bit;
+            if ((bloom.get((int) (bit >>> 6)) & mask) == 0) {
+                bloom.getAndAccumulate((int) (bit >>> 6), mask, (word, m) -> word | m);
+            }
+        }
+    }
+
+    /**
+     * Open-addressing table of {@code (fingerprint, depth)} slots with linear probing.
+     * Lookups are lock-free and may miss recent updates, which only lowers the observed depth;
+     * updates and resizing are made while holding the segment monitor.
+     */
+    private static final class Segment {
+        private volatile ByteBuffer table = allocate(INITIAL_SLOTS);
+        private int size;
+
+        private static ByteBuffer allocate(int slots) {
+            return ByteBuffer.allocateDirect(slots * SLOT + 7).alignedSlice(8);
+        }
+
+        private static int slots(ByteBuffer table) {
+            return table.capacity() / SLOT;
+        }
+
+        private static int home(long fingerprint, int slots) {
+            return (int) (fingerprint ^ (fingerprint >>> 29)) & (slots - 1);
+        }
+
+        int peek(long fingerprint) {
+            ByteBuffer table = this.table;
+            int mask = slots(table) - 1;
+            for (int slot = home(fingerprint, mask + 1); ; slot = (slot + 1) & mask) {
+                long key = (long) LONGS.getAcquire(table, slot * SLOT);
+                if (key == 0) {
+                    return 0;
+                }
+                if (key == fingerprint) {
+                    return (int) (long) LONGS.getAcquire(table, slot * SLOT + 8);
+                }
+            }
+        }
+
+        int raise(long fingerprint, int depth) {
+            ByteBuffer table = this.table;
+            int mask = slots(table) - 1;
+            for (int slot = home(fingerprint, mask + 1); ; slot = (slot + 1) & mask) {
+                long key = (long) LONGS.get(table, slot * SLOT);
+                if (key == fingerprint) {
+                    int previous = (int) (long) LONGS.get(table, slot * SLOT + 8);
+                    if (depth > previous) {
+                        LONGS.setRelease(table, slot * SLOT + 8, (long) depth);
+                    }
+                    return previous;
+                }
+                if (key == 0) {
+                    LONGS.set(table, slot * SLOT + 8, (long) depth);
+                    LONGS.setRelease(table, slot * SLOT, fingerprint);
+                    if (++size * 3 > (mask + 1) * 2) {
+                        resize(table);
+                    }
+                    return 0;
+                }
+            }
+        }
+
+        void forEach(Visitor visitor) {
+            ByteBuffer table = this.table;
+            for (int slot = 0; slot < slots(table); slot++) {
+                long key = (long) LONGS.get(table, slot * SLOT);
+                if (key != 0) {
+                    visitor.visit(key, (int) (long) LONGS.get(table, slot * SLOT + 8));
+                }
+            }
+        }
+
+        void clear() {
+            ByteBuffer table = this.table;
+            for (int offset = 0; offset < slots(table) * SLOT; offset += Long.BYTES) {
+                LONGS.set(table, offset, 0L);
+            }
+            size = 0;
+        }
+
+        private void resize(ByteBuffer old) {
+            int slots = slots(old) * 2;
+            ByteBuffer resized = allocate(slots);
+            for (int i = 0; i < slots(old); i++) {
+                long key = (long) LONGS.get(old, i * SLOT);
+                if (key != 0) {
+                    int slot = home(key, slots);
+                    while ((long) LONGS.get(resized, slot * SLOT) != 0) {
+                        slot = (slot + 1) & (slots - 1);
+                    }
+                    LONGS.set(resized, slot * SLOT + 8, (long) LONGS.get(old, i * SLOT + 8));
+                    LONGS.set(resized, slot * SLOT, key);
+                }
+            }
+            table = resized;
+        }
+    }
+}
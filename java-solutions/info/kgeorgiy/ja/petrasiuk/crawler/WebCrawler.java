@@ -3,51 +3,555 @@ package info.kgeorgiy.ja.petrasiuk.crawler;
 import info.kgeorgiy.java.advanced.crawler.*;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 public class WebCrawler implements NewCrawler {
     private static final int DEFAULT_DOWNLOADERS = 10;
     private static final int DEFAULT_EXTRACTORS = 10;
     private static final int DEFAULT_PER_HOST = 10;
+    private static final long DEFAULT_EXPECTED_URLS = 1 << 20;
+    private static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+    private static final long CHECKPOINT_BYTES = 16 << 20;
+    private static final long HOST_STATE_EXPIRY_NANOS = TimeUnit.MINUTES.toNanos(10);
+    private static final long HOST_STATE_SWEEP_NANOS = TimeUnit.MINUTES.toNanos(1);
 
     private final Downloader downloader;
     private final ExecutorService downloaders;
     private final ExecutorService extractors;
     private final int perHostCount;
-    private final Map<String, HostLimiter> hostSemaphores;
+    private final Map<String, HostLimiter> hostLimiters;
+    private final Map<String, HostLimiter.State> hostStates;
+    private final Queue<VisitedSet> visitedSets = new ConcurrentLinkedQueue<>();
+    private final long expectedUrls;
+    private final double falsePositiveRate;
+    private final PolitenessPolicy policy;
+    private ScheduledExecutorService timer;
+    private boolean closed;
 
     public WebCrawler(Downloader downloader, int downloaders, int extractors, int perHost) {
+        this(downloader, downloaders, extractors, perHost, DEFAULT_EXPECTED_URLS, DEFAULT_FALSE_POSITIVE_RATE);
+    }
+
+    /**
+     * Creates a crawler that applies the politeness policy to every host on top of the per-host limit.
+     *
+     * @param downloader  the downloader of pages
+     * @param downloaders the number of download threads
+     * @param extractors  the number of link extraction threads
+     * @param perHost     the maximal number of concurrent downloads from a single host
+     * @param policy      the per-host rate limits and concurrency adaptation
+     */
+    public WebCrawler(Downloader downloader, int downloaders, int extractors, int perHost, PolitenessPolicy policy) {
+        this(downloader, downloaders, extractors, perHost, DEFAULT_EXPECTED_URLS, DEFAULT_FALSE_POSITIVE_RATE, policy);
+    }
+
+    /**
+     * Creates a crawler whose visited-URL sets are sized for the expected number of URLs per crawl.
+     * The false-positive rate of their Bloom filters trades memory for lookups in the exact store.
+     *
+     * @param downloader        the downloader of pages
+     * @param downloaders       the number of download threads
+     * @param extractors        the number of link extraction threads
+     * @param perHost           the maximal number of concurrent downloads from a single host
+     * @param expectedUrls      the expected number of URLs visited by a single crawl
+     * @param falsePositiveRate the tolerated false-positive rate of the Bloom filter, between 0 and 1
+     */
+    public WebCrawler(Downloader downloader, int downloaders, int extractors, int perHost,
+                      long expectedUrls, double falsePositiveRate) {
+        this(downloader, downloaders, extractors, perHost, expectedUrls, falsePositiveRate, PolitenessPolicy.UNLIMITED);
+    }
+
+    /**
+     * Creates a crawler with explicit visited-set sizing and politeness policy.
+     *
+     * @param downloader        the downloader of pages
+     * @param downloaders       the number of download threads
+     * @param extractors        the number of link extraction threads
+     * @param perHost           the maximal number of concurrent downloads from a single host
+     * @param expectedUrls      the expected number of URLs visited by a single crawl
+     * @param falsePositiveRate the tolerated false-positive rate of the Bloom filter, between 0 and 1
+     * @param policy            the per-host rate limits and concurrency adaptation
+     */
+    public WebCrawler(Downloader downloader, int downloaders, int extractors, int perHost,
+                      long expectedUrls, double falsePositiveRate, PolitenessPolicy policy) {
+        Objects.requireNonNull(policy, "policy must not be null");
+        if (expectedUrls <= 0 || !(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("Invalid visited set parameters: " + expectedUrls + ", " + falsePositiveRate);
+        }
+        this.expectedUrls = expectedUrls;
+        this.falsePositiveRate = falsePositiveRate;
         this.downloader = downloader;
         this.downloaders = Executors.newFixedThreadPool(downloaders);
         this.extractors = new ForkJoinPool(extractors);
         this.perHostCount = perHost;
-        this.hostSemaphores = new ConcurrentHashMap<>();
+        this.hostLimiters = new ConcurrentHashMap<>();
+        this.hostStates = new ConcurrentHashMap<>();
+        this.policy = policy;
+    }
+
+    /**
+     * Checks whether the policy keeps per-host state between downloads: an adaptive limit or an interval.
+     */
+    private boolean isPolicyStateful() {
+        return policy.adaptive() || policy.intervalNanos() > 0;
     }
 
-    private CompletableFuture<Void> processSingleLevel(String url, Set<String> nextLevel,
-                                                       Set<String> processedUrls, Set<String> results,
-                                                       Map<String, IOException> errors, Set<String> excludes) {
-        if (!processedUrls.add(url)) {
-            return CompletableFuture.completedFuture(null);
+    /**
+     * Returns the politeness state of a host. Stateful policies keep it across limiters of the host,
+     * until the host has been idle for ten minutes.
+     * Called inside the limiter map operation for the host.
+     */
+    private HostLimiter.State hostState(String host) {
+        return isPolicyStateful()
+                ? hostStates.computeIfAbsent(host, _ -> new HostLimiter.State(perHostCount, policy))
+                : new HostLimiter.State(perHostCount, policy);
+    }
+
+    /**
+     * Returns the timer of wake-ups and host state expiry, starting it on first use.
+     * Only stateful policies use it, and its thread is a daemon, so an unclosed crawler does not keep the JVM alive.
+     */
+    private synchronized ScheduledExecutorService timer() {
+        if (closed) {
+            throw new RejectedExecutionException("Crawler is closed");
+        }
+        if (timer == null) {
+            timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "crawler-timer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            timer.scheduleWithFixedDelay(this::expireHostStates,
+                    HOST_STATE_SWEEP_NANOS, HOST_STATE_SWEEP_NANOS, TimeUnit.NANOSECONDS);
         }
+        return timer;
+    }
 
-        return downloadDocument(url, excludes, results, errors)
-                .thenAcceptAsync(document -> extractLinks(document, url, nextLevel, errors), extractors);
+    /**
+     * Drops the state of hosts without a limiter that have been idle long enough.
+     * Runs inside the limiter map operation for each host, so no limiter starts with a state being dropped.
+     */
+    private void expireHostStates() {
+        long now = System.nanoTime();
+        for (String host : hostStates.keySet()) {
+            hostLimiters.compute(host, (_, limiter) -> {
+                if (limiter == null) {
+                    hostStates.computeIfPresent(host,
+                            (_, state) -> state.isExpired(now, HOST_STATE_EXPIRY_NANOS) ? null : state);
+                }
+                return limiter;
+            });
+        }
     }
 
-    void extractLinks(Document document, String url, Set<String> nextLevel, Map<String, IOException> errors) {
-        if (document == null) return;
-        try {
-            nextLevel.addAll(document.extractLinks());
-        } catch (IOException e) {
-            errors.put(url, e);
+    /**
+     * State of a single {@link #download} call. Links are scheduled as soon as they are extracted,
+     * without waiting for the rest of their level. Progress is recorded to the journal, if there is one.
+     * <p>
+     * Every URL is kept in the visited set with the best remaining depth it has been reached with.
+     * A page reached by a shorter path after its links were extracted has to propagate them again,
+     * so extracted links are kept while that can still happen. Pages are counted by depth until their links
+     * are propagated; the highest depth with pages in flight, the frontier, never grows, and only pages
+     * at least two levels below it can still be raised. Whenever the frontier drops, the links of pages
+     * that can no longer be raised are released, so only the links of the last levels stay in memory.
+     * Pages finished before a resumed crawl have no links in memory and are downloaded again if raised.
+     */
+    private final class Crawl implements CrawlJournal.State {
+        final Set<String> excludes;
+        final Queue<String> results = new ConcurrentLinkedQueue<>();
+        final Map<String, IOException> errors = new ConcurrentHashMap<>();
+        final VisitedSet visited = visitedSet();
+        final Map<Long, Page> pages = new ConcurrentHashMap<>();
+        final AtomicIntegerArray inFlight;
+        final AtomicInteger frontier;
+        final AtomicInteger pending = new AtomicInteger(1);
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        CrawlJournal journal;
+
+        /**
+         * Creates a crawl of the specified depth. Until {@link #run} schedules the start page,
+         * the crawl itself is counted in flight one level above it.
+         */
+        Crawl(Set<String> excludes, int depth) {
+            this.excludes = excludes;
+            int top = Math.max(depth, 0) + 1;
+            this.inFlight = new AtomicIntegerArray(top + 1);
+            this.inFlight.set(top, 1);
+            this.frontier = new AtomicInteger(top);
         }
+
+        /**
+         * Page whose links may still have to be propagated. While {@code counted}, the page is counted in flight
+         * at {@code depth}; otherwise {@code depth} is the best depth its links have been propagated with.
+         * Links are {@code null} until extracted, and for pages finished before a resumed crawl.
+         * A page is {@code finished} once its propagation is recorded; a page whose download has thrown
+         * is abandoned without links and stays unfinished in checkpoints.
+         */
+        private final class Page {
+            private final String url;
+            private final long fingerprint;
+            private int depth;
+            private List<String> links;
+            private boolean counted;
+            private boolean finished;
+            private int propagations;
+
+            /**
+             * Creates a page counted in flight at the specified depth, or a page finished before a resumed crawl.
+             */
+            Page(String url, long fingerprint, int depth, boolean counted) {
+                this.url = url;
+                this.fingerprint = fingerprint;
+                this.depth = depth;
+                this.counted = counted;
+                this.finished = !counted;
+                if (counted) {
+                    inFlight.incrementAndGet(depth);
+                }
+            }
+
+            /**
+             * Records that the page is reached with the specified depth, which is already raised in the visited set,
+             * and propagates its links or downloads it again if they are not known.
+             */
+            void reach(int depth) {
+                List<String> known = null;
+                boolean download = false;
+                synchronized (this) {
+                    if (depth > this.depth) {
+                        if (links != null) {
+                            known = links;
+                            propagations++;
+                        } else if (counted) {
+                            inFlight.incrementAndGet(depth);
+                            inFlight.decrementAndGet(this.depth);
+                        } else if (finished) {
+                            counted = true;
+                            finished = false;
+                            download = true;
+                            inFlight.incrementAndGet(depth);
+                        }
+                        this.depth = depth;
+                    }
+                }
+                scheduled(url, depth);
+                if (download) {
+                    start(this, true);
+                } else if (known != null) {
+                    try {
+                        propagate(known, depth);
+                    } finally {
+                        synchronized (this) {
+                            propagations--;
+                        }
+                    }
+                    propagated(url, depth);
+                }
+            }
+
+            /**
+             * Stores the extracted links and returns the depth to propagate them with,
+             * at which the page stays counted until {@link #finish} is called.
+             * The depth is read under the page monitor, so a concurrent raise either is seen here
+             * or sees the links and propagates them itself.
+             */
+            synchronized int extracted(List<String> links) {
+                int current = visited.depth(fingerprint);
+                if (current > depth) {
+                    inFlight.incrementAndGet(current);
+                    inFlight.decrementAndGet(depth);
+                    depth = current;
+                }
+                this.links = links;
+                return depth;
+            }
+
+            synchronized void finish() {
+                counted = false;
+                finished = true;
+            }
+
+            /**
+             * Stops counting a page whose download has thrown and returns the depth it was counted at.
+             */
+            synchronized int abandon() {
+                counted = false;
+                return depth;
+            }
+
+            synchronized boolean isFinal(int frontier) {
+                return finished && propagations == 0 && depth >= frontier - 1;
+            }
+
+            synchronized void checkpoint(CrawlJournal.Checkpoint checkpoint) {
+                checkpoint.scheduled(url, depth);
+                if (finished && propagations == 0) {
+                    checkpoint.propagated(url, depth);
+                }
+            }
+        }
+
+        Result run(String url, int depth) {
+            if (depth > 0) {
+                schedule(url, depth);
+            }
+            finished(inFlight.length() - 1);
+            release();
+            done.join();
+            // Nothing touches the visited set once every page is done
+            visited.clear();
+            visitedSets.add(visited);
+            return new Result(List.copyOf(results), errors);
+        }
+
+        /**
+         * Restores the state recorded by a journal. Pages scheduled with a depth they have not propagated with
+         * and not failed are collected to {@code unfinished} and downloaded pages to {@code downloaded},
+         * for {@link #resume}. Propagated pages are kept without links, as if finished before the crawl.
+         */
+        CrawlJournal.Replay replay(Set<String> unfinished, Set<String> downloaded) {
+            return new CrawlJournal.Replay() {
+                @Override
+                public void scheduled(String url, int depth) {
+                    long fingerprint = VisitedSet.fingerprint(url);
+                    visited.raise(fingerprint, depth);
+                    Page propagated = pages.get(fingerprint);
+                    if (!errors.containsKey(url) && (propagated == null || propagated.depth < depth)) {
+                        unfinished.add(url);
+                        pages.remove(fingerprint);
+                    }
+                }
+
+                @Override
+                public void downloaded(String url) {
+                    downloaded.add(url);
+                }
+
+                @Override
+                public void failed(String url, String message) {
+                    errors.put(url, new IOException(message));
+                    unfinished.remove(url);
+                    pages.remove(VisitedSet.fingerprint(url));
+                }
+
+                @Override
+                public void propagated(String url, int depth) {
+                    long fingerprint = VisitedSet.fingerprint(url);
+                    unfinished.remove(url);
+                    Page propagated = pages.get(fingerprint);
+                    if (!errors.containsKey(url) && (propagated == null || propagated.depth < depth)) {
+                        pages.put(fingerprint, new Page(url, fingerprint, depth, false));
+                    }
+                }
+
+                @Override
+                public void visited(long fingerprint, int depth) {
+                    visited.raise(fingerprint, depth);
+                }
+            };
+        }
+
+        /**
+         * Continues a replayed crawl: restores the results of finished pages and restarts unfinished ones.
+         * Every unfinished page is registered before any is started, as the first record of a started page
+         * may take a checkpoint that replaces the records of the rest.
+         */
+        void resume(Set<String> unfinished, Set<String> downloaded) {
+            for (String url : downloaded) {
+                if (!unfinished.contains(url)) {
+                    results.add(url);
+                }
+            }
+            List<Page> restarted = new ArrayList<>(unfinished.size());
+            for (String url : unfinished) {
+                long fingerprint = VisitedSet.fingerprint(url);
+                Page page = new Page(url, fingerprint, visited.depth(fingerprint), true);
+                pages.put(fingerprint, page);
+                restarted.add(page);
+            }
+            for (Page page : restarted) {
+                start(page, false);
+            }
+        }
+
+        @Override
+        public void write(CrawlJournal.Checkpoint checkpoint) {
+            visited.forEach(checkpoint::visited);
+            for (String url : results) {
+                checkpoint.downloaded(url);
+            }
+            errors.forEach((url, e) -> checkpoint.failed(url, String.valueOf(e.getMessage())));
+            for (Page page : pages.values()) {
+                page.checkpoint(checkpoint);
+            }
+        }
+
+        void schedule(String url, int depth) {
+            long fingerprint = VisitedSet.fingerprint(url);
+            int previous = visited.raise(fingerprint, depth);
+            if (previous >= depth) {
+                return;
+            }
+
+            if (previous == 0) {
+                // Reads the depth after a concurrent raise that found no page yet
+                Page page = pages.computeIfAbsent(fingerprint, _ -> new Page(url, fingerprint, visited.depth(fingerprint), true));
+                scheduled(url, depth);
+                start(page, false);
+            } else {
+                Page page = pages.get(fingerprint);
+                if (page != null) {
+                    page.reach(depth);
+                } else {
+                    scheduled(url, depth);
+                }
+            }
+        }
+
+        /**
+         * Records the depth of a page. Like every record, it is appended only after the page is visible
+         * to checkpoints in its new state, so a checkpoint taken in between loses nothing.
+         */
+        private void scheduled(String url, int depth) {
+            if (journal != null) {
+                journal.scheduled(url, depth);
+            }
+        }
+
+        private void propagated(String url, int depth) {
+            if (journal != null) {
+                journal.propagated(url, depth);
+            }
+        }
+
+        /**
+         * Downloads the page and propagates its links. A page downloaded again after a resumed crawl
+         * has already been recorded, so its outcome is not added to the results.
+         */
+        private void start(Page page, boolean again) {
+            pending.incrementAndGet();
+            downloadDocument(page.url, excludes,
+                    again ? new ConcurrentLinkedQueue<>() : results,
+                    again ? new ConcurrentHashMap<>() : errors)
+                    .thenApply(document -> again ? document : downloaded(page.url, document))
+                    .thenApplyAsync(document -> extractLinks(document, page.url, again), extractors)
+                    .whenComplete((links, e) -> {
+                        try {
+                            if (e == null) {
+                                completed(page, links);
+                            } else {
+                                finished(page.abandon());
+                            }
+                        } finally {
+                            release();
+                        }
+                    });
+        }
+
+        private Document downloaded(String url, Document document) {
+            if (journal != null) {
+                IOException error = errors.get(url);
+                if (document != null) {
+                    journal.downloaded(url);
+                } else if (error != null) {
+                    journal.failed(url, error);
+                }
+            }
+            return document;
+        }
+
+        List<String> extractLinks(Document document, String url, boolean again) {
+            if (document == null) return List.of();
+            try {
+                return document.extractLinks();
+            } catch (IOException e) {
+                if (!again) {
+                    errors.put(url, e);
+                    if (journal != null) {
+                        journal.failed(url, e);
+                    }
+                }
+                return List.of();
+            }
+        }
+
+        /**
+         * Propagates the links of a page that is no longer in flight and releases them
+         * if the page cannot be raised anymore.
+         */
+        private void completed(Page page, List<String> links) {
+            int depth = page.extracted(links);
+            propagate(links, depth);
+            page.finish();
+            propagated(page.url, depth);
+            if (page.isFinal(frontier.get())) {
+                pages.remove(page.fingerprint, page);
+            }
+            finished(depth);
+        }
+
+        private void propagate(List<String> links, int depth) {
+            if (depth > 1) {
+                for (String link : links) {
+                    schedule(link, depth - 1);
+                }
+            }
+        }
+
+        /**
+         * Stops counting a page in flight at the specified depth. If that empties the frontier level,
+         * lowers the frontier to the next non-empty level and releases the links of pages that became final.
+         */
+        private void finished(int depth) {
+            if (inFlight.decrementAndGet(depth) != 0) {
+                return;
+            }
+            while (true) {
+                int current = frontier.get();
+                int lowered = highestInFlight(current);
+                if (lowered == current) {
+                    return;
+                }
+                if (frontier.compareAndSet(current, lowered)) {
+                    for (Long fingerprint : pages.keySet()) {
+                        pages.computeIfPresent(fingerprint, (_, page) -> page.isFinal(lowered) ? null : page);
+                    }
+                }
+            }
+        }
+
+        private int highestInFlight(int from) {
+            int depth = from;
+            while (depth > 0 && inFlight.get(depth) == 0) {
+                depth--;
+            }
+            return depth;
+        }
+
+        void release() {
+            if (pending.decrementAndGet() == 0) {
+                done.complete(null);
+            }
+        }
+    }
+
+    /**
+     * Returns a cleared visited set left by a finished crawl, or a new one. Visited sets are kept off-heap
+     * and sized for the expected number of URLs, so they are reused rather than allocated for every crawl.
+     */
+    private VisitedSet visitedSet() {
+        VisitedSet visited = visitedSets.poll();
+        return visited != null ? visited : new VisitedSet(expectedUrls, falsePositiveRate);
     }
 
     private CompletableFuture<Document> downloadDocument(String url, Set<String> excludes,
-                                                         Set<String> results, Map<String, IOException> errors) {
+                                                         Queue<String> results, Map<String, IOException> errors) {
         CompletableFuture<Document> future = new CompletableFuture<>();
 
         String host;
@@ -63,73 +567,82 @@ public class WebCrawler implements NewCrawler {
             return future;
         }
 
-        HostLimiter limiter = hostSemaphores.compute(host, (_, existing) -> {
-            if (existing != null) {
-                existing.users.incrementAndGet();
-                return existing;
-            } else {
-                HostLimiter newLimiter = new HostLimiter(perHostCount);
-                newLimiter.users.incrementAndGet();
-                return newLimiter;
+        Runnable task = () -> {
+            Document document = null;
+            RuntimeException failure = null;
+            long start = System.nanoTime();
+            try {
+                document = downloader.download(url);
+                results.add(url);
+            } catch (IOException e) {
+                errors.put(url, e);
+            } catch (RuntimeException e) {
+                failure = e;
+            } finally {
+                long latency = System.nanoTime() - start;
+                boolean failed = document == null;
+                hostLimiters.computeIfPresent(host, (_, limiter) -> limiter.release(latency, failed) ? limiter : null);
             }
-        });
-
-        Runnable task = new Runnable() {
-            @Override
-            public void run() {
-                if (limiter.semaphore.tryAcquire()) {
-                    try {
-                        Document document = downloader.download(url);
-                        results.add(url);
-                        future.complete(document);
-                    } catch (IOException e) {
-                        errors.put(url, e);
-                        future.complete(null);
-                    } finally {
-                        limiter.semaphore.release();
-                        if (limiter.semaphore.availablePermits() == perHostCount &&
-                                limiter.users.decrementAndGet() == 0) {
-                            hostSemaphores.remove(host, limiter);
-                        }
-                    }
-                } else {
-                    downloaders.submit(this);
-                }
+            if (failure != null) {
+                future.completeExceptionally(failure);
+            } else {
+                future.complete(document);
             }
         };
 
-        downloaders.submit(task);
+        hostLimiters.compute(host, (_, limiter) -> {
+            HostLimiter result = limiter != null ? limiter : new HostLimiter(perHostCount, policy, hostState(host),
+                    downloaders, isPolicyStateful() ? timer() : null,
+                    () -> hostLimiters.computeIfPresent(host, (_, woken) -> woken.wake() ? woken : null));
+            result.submit(task);
+            return result;
+        });
         return future;
     }
 
     @Override
     public Result download(String url, int depth, List<String> excludes) {
-        Set<String> processedUrls = ConcurrentHashMap.newKeySet();
-        Set<String> results = ConcurrentHashMap.newKeySet();
-        Map<String, IOException> errors = new ConcurrentHashMap<>();
-        Set<String> currentLevel = ConcurrentHashMap.newKeySet();
-        Set<String> excludesSet = new HashSet<>(excludes);
-        currentLevel.add(url);
-
-        for (int i = 0; i < depth; i++) {
-            Set<String> nextLevel = ConcurrentHashMap.newKeySet();
+        return new Crawl(new HashSet<>(excludes), depth).run(url, depth);
+    }
 
-            CompletableFuture<?>[] futures = currentLevel.stream()
-                    .map(currentUrl ->
-                            processSingleLevel(currentUrl, nextLevel, processedUrls, results, errors, excludesSet))
-                    .toArray(CompletableFuture[]::new);
-            CompletableFuture.allOf(futures).join();
-            nextLevel.removeAll(processedUrls);
-            currentLevel = nextLevel;
+    /**
+     * Downloads the website like {@link #download(String, int, List)}, recording progress to an append-only journal
+     * that is periodically replaced by a checkpoint of the crawl state.
+     * If the journal already exists, the crawl is resumed from it: pages whose links were scheduled
+     * or whose download failed are not downloaded again.
+     *
+     * @param url      the start URL
+     * @param depth    the download depth
+     * @param excludes the host parts to exclude
+     * @param journal  the journal file of this crawl
+     * @return the download result
+     * @throws IllegalArgumentException if the journal belongs to a crawl with another URL or depth
+     * @throws UncheckedIOException     if the journal cannot be read or written
+     */
+    public Result download(String url, int depth, List<String> excludes, Path journal) {
+        Crawl crawl = new Crawl(new HashSet<>(excludes), depth);
+        Set<String> unfinished = new LinkedHashSet<>();
+        Set<String> downloaded = new HashSet<>();
+        try (CrawlJournal opened = CrawlJournal.open(
+                journal, url, depth, CHECKPOINT_BYTES, crawl, crawl.replay(unfinished, downloaded))) {
+            crawl.journal = opened;
+            crawl.resume(unfinished, downloaded);
+            return crawl.run(url, depth);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-
-        return new Result(List.copyOf(results), errors);
     }
 
     @Override
     public void close() {
         downloaders.shutdownNow();
         extractors.shutdownNow();
+        synchronized (this) {
+            closed = true;
+            if (timer != null) {
+                timer.shutdownNow();
+            }
+        }
     }
 
     private static int getArgument(String[] args, int index, int defaultValue) {
@@ -0,0 +1,49 @@
+package info.kgeorgiy.ja.petrasiuk.iterative;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cancellation token shared by the workers of one short-circuiting search over positions {@code 0, 1, 2, ...}.
+ * Once a match is reported at some position, all later positions are cancelled,
+ * while earlier positions still have to be scanned since they may hold an earlier match.
+ */
+public class CancellationToken {
+    private final AtomicInteger bound = new AtomicInteger(Integer.MAX_VALUE);
+
+    /**
+     * Reports a match at the specified position, cancelling all later positions.
+     *
+     * @param position the position of the match
+     */
+    public void found(int position) {
+        bound.accumulateAndGet(position, Math::min);
+    }
+
+    /**
+     * Cancels all positions.
+     */
+    public void cancel() {
+        bound.set(-1);
+    }
+
+    /**
+     * Checks whether the specified position no longer needs to be processed.
+     *
+     * @param position the position to check
+     * @return {@code true} if a match was reported at an earlier position or the token was cancelled
+     */
+    public boolean isCancelled(int position) {
+        return position > bound.get();
+    }
+
+    /**
+     * Returns the earliest reported match.
+     *
+     * @return the earliest position reported by {@link #found(int)},
+     * or {@code -1} if there is none or the token was cancelled
+     */
+    public int firstFound() {
+        int position = bound.get();
+        return position == Integer.MAX_VALUE ? -1 : position;
+    }
+}
@@ -0,0 +1,20 @@
+package info.kgeorgiy.ja.petrasiuk.iterative;
+
+import java.util.List;
+
+/**
+ * Receives results of a streaming map chunk by chunk, as soon as each chunk is complete.
+ * Chunks may be delivered out of order and from several threads at once.
+ *
+ * @param <R> the type of the results
+ */
+@FunctionalInterface
+public interface ChunkConsumer<R> {
+    /**
+     * Accepts the results of one chunk.
+     *
+     * @param start   the index of the first item of the chunk in the input list
+     * @param results the results for the items of the chunk, in input order
+     */
+    void accept(int start, List<? extends R> results);
+}
@@ -0,0 +1,95 @@
+package info.kgeorgiy.ja.petrasiuk.iterative;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out consecutive chunks of the index range {@code [0, size)} to concurrent claimers
+ * using guided self-scheduling: every chunk is a fixed fraction of the work still remaining,
+ * so chunks are large at the start and shrink as the range drains, which balances skewed workloads.
+ */
+public class ChunkCursor {
+    private final AtomicInteger next = new AtomicInteger();
+    private final int size;
+    private final int divisor;
+    private final int minChunk;
+    private volatile boolean cancelled;
+
+    /**
+     * Constructs a cursor over {@code [0, size)}.
+     *
+     * @param size     the number of indices to hand out
+     * @param workers  the number of concurrent claimers
+     * @param minChunk the smallest chunk to hand out, except possibly the last one
+     */
+    public ChunkCursor(int size, int workers, int minChunk) {
+        this.size = size;
+        this.divisor = 2 * Math.max(workers, 1);
+        this.minChunk = Math.max(minChunk, 1);
+    }
+
+    /**
+     * Claims the next chunk.
+     *
+     * @return the claimed chunk packed as {@code (long) start << 32 | end}, or {@code -1} if the range is drained
+     */
+    public long claim() {
+        while (true) {
+            int start = next.get();
+            int remaining = size - start;
+            if (remaining <= 0) {
+                return -1;
+            }
+            int chunk = Math.max(minChunk, (remaining + divisor - 1) / divisor);
+            int end = start + Math.min(chunk, remaining);
+            if (next.compareAndSet(start, end)) {
+                return (long) start << 32 | end;
+            }
+        }
+    }
+
+    /**
+     * Drains the cursor, so that every subsequent {@link #claim()} returns {@code -1}.
+     * Chunks already handed out are not affected.
+     */
+    public void drain() {
+        next.set(size);
+    }
+
+    /**
+     * Drains the cursor and cancels it, so that claimers of chunks already handed out
+     * stop at the next item once they see {@link #isCancelled()}.
+     */
+    public void cancel() {
+        cancelled = true;
+        drain();
+    }
+
+    /**
+     * Returns whether {@link #cancel()} has been called.
+     *
+     * @return {@code true} if the cursor is cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Returns the start of a chunk returned by {@link #claim()}.
+     *
+     * @param chunk the packed chunk
+     * @return the first index of the chunk
+     */
+    public static int start(long chunk) {
+        return (int) (chunk >>> 32);
+    }
+
+    /**
+     * Returns the end of a chunk returned by {@link #claim()}.
+     *
+     * @param chunk the packed chunk
+     * @return the index after the last index of the chunk
+     */
+    public static int end(long chunk) {
+        return (int) chunk;
+    }
+}
@@ -8,6 +8,7 @@ public class DoneMonitor {
     private int doneParts = 0;
     private final int totalParts;
     private RuntimeException exception;
+    private Runnable onDone;
 
     /**
      * Constructs a new {@code DoneMonitor} for tracking the specified number of tasks.
@@ -21,9 +22,33 @@ public class DoneMonitor {
     /**
      * Increments the count of completed tasks and notifies waiting threads.
      */
-    public synchronized void addPart() {
-        doneParts++;
-        notify();
+    public void addPart() {
+        Runnable action;
+        synchronized (this) {
+            doneParts++;
+            notify();
+            action = doneParts == totalParts ? onDone : null;
+        }
+        if (action != null) {
+            action.run();
+        }
+    }
+
+    /**
+     * Registers an action to run once all tasks are complete. The action runs on the thread completing
+     * the last task, or immediately on the calling thread if all tasks are already complete.
+     * Only one action may be registered.
+     *
+     * @param action the action to run
+     */
+    public void whenDone(Runnable action) {
+        synchronized (this) {
+            if (doneParts != totalParts) {
+                onDone = action;
+                return;
+            }
+        }
+        action.run();
     }
 
     /**
@@ -56,7 +81,7 @@ public class DoneMonitor {
      *
      * @return the runtime exception, or {@code null} if no exceptions occurred
      */
-    public RuntimeException getException() {
+    public synchronized RuntimeException getException() {
         return exception;
     }
 }
\ No newline at end of file
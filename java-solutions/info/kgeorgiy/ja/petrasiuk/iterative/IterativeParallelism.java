@@ -4,12 +4,17 @@ import info.kgeorgiy.java.advanced.iterative.ListIP;
 import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.function.Predicate;
-import java.util.stream.Collector;
-import java.util.stream.IntStream;
-import java.util.stream.LongStream;
-import java.util.stream.Stream;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
 
 /**
  * Provides parallel processing capabilities for lists, utilizing either a provided {@link ParallelMapper}
@@ -17,7 +22,14 @@ import java.util.stream.Stream;
  * filtering, mapping, and summing indices.
  */
 public class IterativeParallelism implements ListIP {
-    private ParallelMapper mapper;
+    private static final long POOL_KEEP_ALIVE_SECONDS = 30;
+    private static final int POOL_THREADS_PER_PROCESSOR = 8;
+    private static final int POOL_MIN_THREADS = 64;
+    private static final int DEFAULT_INLINE_THRESHOLD = 64;
+
+    private final ParallelMapper mapper;
+    private final ExecutorService executor;
+    private final int inlineThreshold;
 
     /**
      * Constructs an {@code IterativeParallelism} instance with a specified {@link ParallelMapper}.
@@ -26,62 +38,132 @@ public class IterativeParallelism implements ListIP {
      */
     public IterativeParallelism(ParallelMapper mapper) {
         this.mapper = mapper;
+        this.executor = null;
+        this.inlineThreshold = 0;
     }
 
     /**
-     * Constructs an {@code IterativeParallelism} instance that uses a custom thread pool for parallel processing.
+     * Constructs an {@code IterativeParallelism} instance that uses a shared thread pool for parallel processing.
+     * The pool is created on first use, consists of daemon threads, grows on demand up to
+     * {@value #POOL_THREADS_PER_PROCESSOR} threads per processor, but at least {@value #POOL_MIN_THREADS},
+     * and shrinks after {@value #POOL_KEEP_ALIVE_SECONDS} seconds of idleness.
+     * When the pool is saturated, parts run on the calling thread.
+     * Lists shorter than {@value #DEFAULT_INLINE_THRESHOLD} elements are processed on the calling thread.
      */
     public IterativeParallelism() {
+        this(null, DEFAULT_INLINE_THRESHOLD);
+    }
+
+    /**
+     * Constructs an {@code IterativeParallelism} instance that runs parts on the specified executor,
+     * for example {@link java.util.concurrent.ForkJoinPool#commonPool()}.
+     * Lists shorter than the threshold are processed on the calling thread.
+     *
+     * @param executor        the executor to run parts on, or {@code null} for the shared thread pool
+     * @param inlineThreshold the minimal list size processed in parallel
+     */
+    public IterativeParallelism(ExecutorService executor, int inlineThreshold) {
+        this.mapper = null;
+        this.executor = executor;
+        this.inlineThreshold = inlineThreshold;
     }
 
-    private <T> List<List<T>> splitParts(List<T> items, int totalParts) {
-        List<List<T>> parts = new ArrayList<>();
-        int size = items.size();
+    private static final class SharedPool {
+        private static final ExecutorService EXECUTOR = new ThreadPoolExecutor(
+                0, Math.max(POOL_MIN_THREADS, POOL_THREADS_PER_PROCESSOR * Runtime.getRuntime().availableProcessors()),
+                POOL_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new SynchronousQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "iterative-parallelism-worker");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy()
+        );
+    }
+
+    /**
+     * Half-open range {@code [from, to)} of list indices processed by one thread,
+     * {@code part} being the index of the range in the split.
+     */
+    private record Range(int part, int from, int to) {
+    }
+
+    /**
+     * Element of a list together with its index.
+     */
+    private record Indexed<T>(int index, T value) {
+    }
+
+    private static List<Range> splitRanges(int size, int totalParts) {
+        List<Range> ranges = new ArrayList<>(totalParts);
         for (int i = 0; i < totalParts; i++) {
-            int start = i * size / totalParts;
-            int end = (i + 1) * size / totalParts;
-            parts.add(items.subList(start, end));
+            ranges.add(new Range(i, (int) ((long) i * size / totalParts), (int) ((long) (i + 1) * size / totalParts)));
         }
-        return parts;
+        return ranges;
     }
 
-    private <T, R> List<R> processInParallel(
+    private <R> List<R> processRanges(
             int threads,
-            List<T> items,
-            Function<List<T>, R> f
+            int size,
+            Function<Range, R> f
     ) throws InterruptedException {
-        List<Thread> threadsPool = new ArrayList<>(threads);
-        List<List<T>> parts = splitParts(items, threads);
-        if (mapper == null) {
-            List<R> results = new ArrayList<>(Collections.nCopies(threads, null));
-            for (int i = 0; i < parts.size(); i++) {
-                int partIndex = i;
-                Thread thread = new Thread(() -> results.set(partIndex, (f.apply(parts.get(partIndex)))));
-                threadsPool.add(thread);
-                thread.start();
-            }
-            InterruptedException wasInterrupted = null;
-            for (Thread thread : threadsPool) {
-                while (true) {
-                    try {
-                        thread.join();
-                        break;
-                    } catch (InterruptedException e) {
-                        if (wasInterrupted != null) {
-                            wasInterrupted.addSuppressed(e);
-                        } else {
-                            wasInterrupted = e;
-                        }
+        if (size < inlineThreshold || mapper == null && threads == 1) {
+            return Collections.singletonList(f.apply(new Range(0, 0, size)));
+        }
+        List<Range> parts = splitRanges(size, threads);
+        if (mapper != null) {
+            return mapper.map(f, parts);
+        }
+
+        ExecutorService pool = executor != null ? executor : SharedPool.EXECUTOR;
+        List<Future<R>> futures = new ArrayList<>(parts.size() - 1);
+        for (Range part : parts.subList(1, parts.size())) {
+            futures.add(pool.submit(() -> f.apply(part)));
+        }
+
+        List<R> results = new ArrayList<>(parts.size());
+        RuntimeException failure = null;
+        try {
+            results.add(f.apply(parts.getFirst()));
+        } catch (RuntimeException e) {
+            results.add(null);
+            failure = e;
+        }
+        InterruptedException wasInterrupted = null;
+        for (Future<R> future : futures) {
+            while (true) {
+                try {
+                    results.add(future.get());
+                    break;
+                } catch (InterruptedException e) {
+                    if (wasInterrupted != null) {
+                        wasInterrupted.addSuppressed(e);
+                    } else {
+                        wasInterrupted = e;
                     }
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof Error error) {
+                        throw error;
+                    }
+                    RuntimeException cause = (RuntimeException) e.getCause();
+                    results.add(null);
+                    if (failure != null) {
+                        failure.addSuppressed(cause);
+                    } else {
+                        failure = cause;
+                    }
+                    break;
                 }
             }
-            if (wasInterrupted != null) {
-                throw wasInterrupted;
-            }
-            return results;
-        } else {
-            return mapper.map(f, parts);
         }
+        if (wasInterrupted != null) {
+            throw wasInterrupted;
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
     }
 
     /**
@@ -98,17 +180,25 @@ public class IterativeParallelism implements ListIP {
     public <T> int argMax(int threads, List<T> values, Comparator<? super T> comparator) throws InterruptedException {
         if (values.isEmpty()) return -1;
 
-        List<Optional<T>> results = processInParallel(
-                threads,
-                values,
-                part -> part.stream().max(comparator)
-        );
+        List<Indexed<T>> results = processRanges(threads, values.size(), range -> {
+            Indexed<T> best = null;
+            int index = range.from;
+            for (T value : values.subList(range.from, range.to)) {
+                if (best == null || comparator.compare(value, best.value) > 0) {
+                    best = new Indexed<>(index, value);
+                }
+                index++;
+            }
+            return best;
+        });
 
-        return results.stream()
-                .flatMap(Optional::stream)
-                .max(comparator)
-                .map(values::indexOf)
-                .orElse(-1);
+        Indexed<T> best = null;
+        for (Indexed<T> result : results) {
+            if (result != null && (best == null || comparator.compare(result.value, best.value) > 0)) {
+                best = result;
+            }
+        }
+        return best == null ? -1 : best.index;
     }
 
     /**
@@ -128,6 +218,8 @@ public class IterativeParallelism implements ListIP {
 
     /**
      * Finds the index of the first element that satisfies the predicate.
+     * Threads share a {@link CancellationToken} and stop scanning as soon as a match is found
+     * before their current position.
      *
      * @param <T>       the type of elements in the list
      * @param threads   the number of threads to use
@@ -138,23 +230,29 @@ public class IterativeParallelism implements ListIP {
      */
     @Override
     public <T> int indexOf(int threads, List<T> values, Predicate<? super T> predicate) throws InterruptedException {
-        List<Optional<Integer>> results = processInParallel(
-                threads,
-                values,
-                part -> part.stream()
-                        .filter(predicate)
-                        .findFirst()
-                        .map(values::indexOf)
-        );
+        CancellationToken token = new CancellationToken();
+        processRanges(threads, values.size(), range -> {
+            int index = range.from;
+            for (T value : values.subList(range.from, range.to)) {
+                if (token.isCancelled(index)) {
+                    break;
+                }
+                if (predicate.test(value)) {
+                    token.found(index);
+                    break;
+                }
+                index++;
+            }
+            return null;
+        });
 
-        return results.stream()
-                .flatMap(Optional::stream)
-                .findFirst()
-                .orElse(-1);
+        return token.firstFound();
     }
 
     /**
      * Finds the index of the last element that satisfies the predicate.
+     * Every thread scans its range backwards, and threads stop as soon as a match is found
+     * after their current position.
      *
      * @param <T>       the type of elements in the list
      * @param threads   the number of threads to use
@@ -165,8 +263,67 @@ public class IterativeParallelism implements ListIP {
      */
     @Override
     public <T> int lastIndexOf(int threads, List<T> values, Predicate<? super T> predicate) throws InterruptedException {
-        int result = indexOf(threads, values.reversed(), predicate);
-        return result == -1 ? -1 : values.size() - result - 1;
+        int size = values.size();
+        CancellationToken token = new CancellationToken();
+        processRanges(threads, size, range -> {
+            ListIterator<T> iterator = values.listIterator(range.to);
+            for (int index = range.to - 1; index >= range.from; index--) {
+                T value = iterator.previous();
+                int position = size - 1 - index;
+                if (token.isCancelled(position)) {
+                    break;
+                }
+                if (predicate.test(value)) {
+                    token.found(position);
+                    break;
+                }
+            }
+            return null;
+        });
+
+        int position = token.firstFound();
+        return position == -1 ? -1 : size - 1 - position;
+    }
+
+    /**
+     * Checks whether any element satisfies the predicate, stopping all threads at the first match found.
+     *
+     * @param <T>       the type of elements in the list
+     * @param threads   the number of threads to use
+     * @param values    the list to process
+     * @param predicate the predicate to test elements
+     * @return {@code true} if some element matches
+     * @throws InterruptedException if a thread is interrupted during execution
+     */
+    public <T> boolean anyMatch(int threads, List<? extends T> values, Predicate<? super T> predicate) throws InterruptedException {
+        CancellationToken token = new CancellationToken();
+        processRanges(threads, values.size(), range -> {
+            for (T value : values.subList(range.from, range.to)) {
+                if (token.isCancelled(0)) {
+                    break;
+                }
+                if (predicate.test(value)) {
+                    token.cancel();
+                    break;
+                }
+            }
+            return null;
+        });
+        return token.isCancelled(0);
+    }
+
+    /**
+     * Checks whether all elements satisfy the predicate, stopping all threads at the first mismatch found.
+     *
+     * @param <T>       the type of elements in the list
+     * @param threads   the number of threads to use
+     * @param values    the list to process
+     * @param predicate the predicate to test elements
+     * @return {@code true} if every element matches, including the case of an empty list
+     * @throws InterruptedException if a thread is interrupted during execution
+     */
+    public <T> boolean allMatch(int threads, List<? extends T> values, Predicate<? super T> predicate) throws InterruptedException {
+        return !anyMatch(threads, values, predicate.negate());
     }
 
     /**
@@ -181,14 +338,23 @@ public class IterativeParallelism implements ListIP {
      */
     @Override
     public <T> long sumIndices(int threads, List<? extends T> values, Predicate<? super T> predicate) throws InterruptedException {
-        List<Long> results = processInParallel(
-                threads,
-                IntStream.range(0, values.size()).boxed().toList(),
-                part -> part.stream()
-                        .mapToLong(index -> predicate.test(values.get(index)) ? index : 0L)
-                        .sum());
+        List<Long> results = processRanges(threads, values.size(), range -> {
+            long sum = 0;
+            int index = range.from;
+            for (T value : values.subList(range.from, range.to)) {
+                if (predicate.test(value)) {
+                    sum += index;
+                }
+                index++;
+            }
+            return sum;
+        });
 
-        return results.stream().reduce(0L, Long::sum);
+        long sum = 0;
+        for (long result : results) {
+            sum += result;
+        }
+        return sum;
     }
 
     /**
@@ -203,14 +369,363 @@ public class IterativeParallelism implements ListIP {
      */
     @Override
     public <T> int[] indices(int threads, List<? extends T> values, Predicate<? super T> predicate) throws InterruptedException {
-        return processInParallel(
-                threads,
-                IntStream.range(0, values.size()).boxed().toList(),
-                part -> part.stream()
-                        .filter(index -> predicate.test(values.get(index))).toList())
-                .stream()
-                .flatMapToInt(list -> list.stream().mapToInt(Integer::intValue))
-                .toArray();
+        List<int[]> parts = processRanges(threads, values.size(), range -> {
+            int[] found = new int[range.to - range.from];
+            int count = 0;
+            int index = range.from;
+            for (T value : values.subList(range.from, range.to)) {
+                if (predicate.test(value)) {
+                    found[count++] = index;
+                }
+                index++;
+            }
+            return Arrays.copyOf(found, count);
+        });
+
+        int[] result = new int[parts.stream().mapToInt(part -> part.length).sum()];
+        int offset = 0;
+        for (int[] part : parts) {
+            System.arraycopy(part, 0, result, offset, part.length);
+            offset += part.length;
+        }
+        return result;
+    }
+
+    /**
+     * Applies an {@code int}-valued function to each element in the list without boxing the results.
+     *
+     * @param <T>     the type of elements in the list
+     * @param threads the number of threads to use
+     * @param values  the list to process
+     * @param f       the function to apply to each element
+     * @return an array of results in the order of the list
+     * @throws InterruptedException if a thread is interrupted during execution
+     */
+    public <T> int[] mapToInt(int threads, List<? extends T> values, ToIntFunction<? super T> f) throws InterruptedException {
+        int[] result = new int[values.size()];
+        processRanges(threads, values.size(), range -> {
+            int index = range.from;
+            for (T value : values.subList(range.from, range.to)) {
+                result[index++] = f.applyAsInt(value);
+            }
+            return null;
+        });
+        return result;
+    }
+
+    /**
+     * Applies a {@code long}-valued function to each element in the list without boxing the results.
+     *
+     * @param <T>     the type of elements in the list
+     * @param threads the number of threads to use
+     * @param values  the list to process
+     * @param f       the function to apply to each element
+     * @return an array of results in the order of the list
+     * @throws InterruptedException if a thread is interrupted during execution
+     */
+    public <T> long[] mapToLong(int threads, List<? extends T> values, ToLongFunction<? super T> f) throws InterruptedException {
+        long[] result = new long[values.size()];
+        processRanges(threads, values.size(), range -> {
+            int index = range.from;
+            for (T value : values.subList(range.from, range.to)) {
+                result[index++] = f.applyAsLong(value);
+            }
+            return null;
+        });
+        return result;
+    }
+
+    /**
+     * Applies a {@code double}-valued function to each element in the list without boxing the results.
+     *
+     * @param <T>     the type of elements in the list
+     * @param threads the number of threads to use
+     * @param values  the list to process
+     * @param f       the function to apply to each element
+     * @return an array of results in the order of the list
+     * @throws InterruptedException if a thread is interrupted during execution
+     */
+    public <T> double[] mapToDouble(int threads, List<? extends T> values, ToDoubleFunction<? super T> f) throws InterruptedException {
+        double[] result = new double[values.size()];
+        processRanges(threads, values.size(), range -> {
+            int index = range.from;
+            for (T value : values.subList(range.from, range.to)) {
+                result[index++] = f.applyAsDouble(value);
+            }
+            return null;
+        });
+        return result;
+    }
+
+    /**
+     * Computes the sum of a {@code long}-valued function over the list without boxing.
+     *
+     * @param <T>     the type of elements in the list
+     * @param threads the number of threads to use
+     * @param values  the list to process
+     * @param f       the function to apply to each element
+     * @return the sum of the function values, {@code 0} for an empty list
+     * @throws InterruptedException if a thread is interrupted during execution
+     */
+    public <T> long sum(int threads, List<? extends T> values, ToLongFunction<? super T> f) throws InterruptedException {
+        List<Long> results = processRanges(threads, values.size(), range -> {
+            long sum = 0;
+            for (T value : values.subList(range.from, range.to)) {
+                sum += f.applyAsLong(value);
+            }
+            return sum;
+        });
+
+        long sum = 0;
+        for (long result : results) {
+            sum += result;
+        }
+        return sum;
+    }
+
+    /**
+     * Finds the minimum of a {@code long}-valued function over the list without boxing.
+     *
+     * @param <T>     the type of elements in the list
+     * @param threads the number of threads to use
+     * @param values  the list to process
+     * @param f       the function to apply to each element
+     * @return the minimum of the function values, or an empty optional for an empty list
+     * @throws InterruptedException if a thread is interrupted during execution
+     */
+    public <T> OptionalLong min(int threads, List<? extends T> values, ToLongFunction<? super T> f) throws InterruptedException {
+        return extremum(threads, values, f, -1);
+    }
+
+    /**
+     * Finds the maximum of a {@code long}-valued function over the list without boxing.
+     *
+     * @param <T>     the type of elements in the list
+     * @param threads the number of threads to use
+     * @param values  the list to process
+     * @param f       the function to apply to each element
+     * @return the maximum of the function values, or an empty optional for an empty list
+     * @throws InterruptedException if a thread is interrupted during execution
+     */
+    public <T> OptionalLong max(int threads, List<? extends T> values, ToLongFunction<? super T> f) throws InterruptedException {
+        return extremum(threads, values, f, 1);
+    }
+
+    private <T> OptionalLong extremum(
+            int threads,
+            List<? extends T> values,
+            ToLongFunction<? super T> f,
+            int sign
+    ) throws InterruptedException {
+        List<OptionalLong> results = processRanges(threads, values.size(), range -> {
+            boolean found = false;
+            long best = 0;
+            for (T value : values.subList(range.from, range.to)) {
+                long current = f.applyAsLong(value);
+                if (!found || Long.compare(current, best) * sign > 0) {
+                    best = current;
+                    found = true;
+                }
+            }
+            return found ? OptionalLong.of(best) : OptionalLong.empty();
+        });
+
+        OptionalLong best = OptionalLong.empty();
+        for (OptionalLong result : results) {
+            if (result.isPresent() && (best.isEmpty() || Long.compare(result.getAsLong(), best.getAsLong()) * sign > 0)) {
+                best = result;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Sorts the list. Every thread sorts its own slice, and the sorted slices are then merged.
+     * The sort is stable.
+     *
+     * @param <T>        the type of elements in the list
+     * @param threads    the number of threads to use
+     * @param values     the list to sort
+     * @param comparator the comparator to compare elements
+     * @return an unmodifiable sorted list
+     * @throws InterruptedException if a thread is interrupted during execution
+     * @throws NullPointerException if the comparator is null
+     */
+    public <T> List<T> sort(int threads, List<? extends T> values, Comparator<? super T> comparator) throws InterruptedException {
+        Objects.requireNonNull(comparator, "comparator must not be null");
+        List<List<T>> runs = processRanges(threads, values.size(), range -> {
+            List<T> run = new ArrayList<>(values.subList(range.from, range.to));
+            run.sort(comparator);
+            return run;
+        });
+        return Collections.unmodifiableList(mergeRuns(runs, comparator, values.size()));
+    }
+
+    private static <T> List<T> mergeRuns(List<List<T>> runs, Comparator<? super T> comparator, int size) {
+        if (runs.size() == 1) {
+            return runs.getFirst();
+        }
+        int[] positions = new int[runs.size()];
+        PriorityQueue<Integer> heads = new PriorityQueue<>(
+                runs.size(),
+                Comparator.<Integer, T>comparing(run -> runs.get(run).get(positions[run]), comparator)
+                        .thenComparingInt(run -> run)
+        );
+        for (int run = 0; run < runs.size(); run++) {
+            if (!runs.get(run).isEmpty()) {
+                heads.add(run);
+            }
+        }
+        List<T> result = new ArrayList<>(size);
+        while (!heads.isEmpty()) {
+            int run = heads.poll();
+            result.add(runs.get(run).get(positions[run]++));
+            if (positions[run] < runs.get(run).size()) {
+                heads.add(run);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns distinct elements of the list in the order of their first occurrence.
+     * Elements are partitioned by hash, and every thread deduplicates its own partitions.
+     *
+     * @param <T>     the type of elements in the list
+     * @param threads the number of threads to use
+     * @param values  the list to process
+     * @return an unmodifiable list of distinct elements
+     * @throws InterruptedException if a thread is interrupted during execution
+     */
+    public <T> List<T> distinct(int threads, List<? extends T> values) throws InterruptedException {
+        int size = values.size();
+        Object[] elements = new Object[size];
+        List<int[][]> buckets = partitionByHash(threads, values, Function.identity(), elements, null);
+
+        boolean[] keep = new boolean[size];
+        processRanges(threads, threads, range -> {
+            for (int partition = range.from; partition < range.to; partition++) {
+                Set<Object> seen = new HashSet<>();
+                for (int[][] slice : buckets) {
+                    for (int index : slice[partition]) {
+                        if (seen.add(elements[index])) {
+                            keep[index] = true;
+                        }
+                    }
+                }
+            }
+            return null;
+        });
+
+        List<Integer> counts = processRanges(threads, size, range -> {
+            int count = 0;
+            for (int index = range.from; index < range.to; index++) {
+                if (keep[index]) {
+                    count++;
+                }
+            }
+            return count;
+        });
+        return compact(threads, IterativeParallelism.<T>asList(elements), keep, counts);
+    }
+
+    /**
+     * Group of elements sharing a key, together with the index of its first element.
+     */
+    private record Group<K, T>(int first, K key, List<T> values) {
+    }
+
+    /**
+     * Groups elements of the list by the keys produced by the classifier.
+     * Keys are partitioned by hash, and every thread builds the groups of its own partitions.
+     *
+     * @param <T>        the type of elements in the list
+     * @param <K>        the type of keys
+     * @param threads    the number of threads to use
+     * @param values     the list to process
+     * @param classifier the function producing the key of an element
+     * @return a map from keys to the lists of their elements, both in the order of first occurrence
+     * @throws InterruptedException if a thread is interrupted during execution
+     * @throws NullPointerException if the classifier is null
+     */
+    public <T, K> Map<K, List<T>> groupingBy(
+            int threads,
+            List<? extends T> values,
+            Function<? super T, ? extends K> classifier
+    ) throws InterruptedException {
+        Objects.requireNonNull(classifier, "classifier must not be null");
+        int size = values.size();
+        Object[] elements = new Object[size];
+        Object[] keys = new Object[size];
+        List<int[][]> buckets = partitionByHash(threads, values, classifier, keys, elements);
+
+        @SuppressWarnings("unchecked")
+        List<List<Group<K, T>>> parts = processRanges(threads, threads, range -> {
+            List<Group<K, T>> groups = new ArrayList<>();
+            for (int partition = range.from; partition < range.to; partition++) {
+                Map<Object, Group<K, T>> byKey = new HashMap<>();
+                for (int[][] slice : buckets) {
+                    for (int index : slice[partition]) {
+                        Group<K, T> group = byKey.get(keys[index]);
+                        if (group == null) {
+                            group = new Group<>(index, (K) keys[index], new ArrayList<>());
+                            byKey.put(keys[index], group);
+                            groups.add(group);
+                        }
+                        group.values.add((T) elements[index]);
+                    }
+                }
+            }
+            return groups;
+        });
+
+        Map<K, List<T>> result = new LinkedHashMap<>();
+        parts.stream()
+                .flatMap(Collection::stream)
+                .sorted(Comparator.comparingInt(Group::first))
+                .forEach(group -> result.put(group.key, group.values));
+        return result;
+    }
+
+    /**
+     * Computes the key of every element and partitions element indices by key hash into {@code threads} partitions.
+     *
+     * @return for every slice, indices of its elements in every partition, in ascending order
+     */
+    private <T> List<int[][]> partitionByHash(
+            int threads,
+            List<? extends T> values,
+            Function<? super T, ?> keyOf,
+            Object[] keys,
+            Object[] elements
+    ) throws InterruptedException {
+        int[] partitions = new int[values.size()];
+        return processRanges(threads, values.size(), range -> {
+            int[] counts = new int[threads];
+            int index = range.from;
+            for (T value : values.subList(range.from, range.to)) {
+                Object key = keyOf.apply(value);
+                keys[index] = key;
+                if (elements != null) {
+                    elements[index] = value;
+                }
+                int hash = Objects.hashCode(key);
+                partitions[index] = Math.floorMod(hash ^ (hash >>> 16), threads);
+                counts[partitions[index]]++;
+                index++;
+            }
+
+            int[][] slice = new int[threads][];
+            for (int partition = 0; partition < threads; partition++) {
+                slice[partition] = new int[counts[partition]];
+                counts[partition] = 0;
+            }
+            for (index = range.from; index < range.to; index++) {
+                int partition = partitions[index];
+                slice[partition][counts[partition]++] = index;
+            }
+            return slice;
+        });
     }
 
     /**
@@ -225,14 +740,55 @@ public class IterativeParallelism implements ListIP {
      */
     @Override
     public <T> List<T> filter(int threads, List<? extends T> values, Predicate<? super T> predicate) throws InterruptedException {
-        return processInParallel(
-                threads,
-                values,
-                part -> part.stream()
-                        .filter(predicate).map(x -> (T) x).toList()
-        ).stream()
-                .flatMap(Collection::stream)
-                .toList();
+        boolean[] keep = new boolean[values.size()];
+        List<Integer> counts = processRanges(threads, values.size(), range -> {
+            int count = 0;
+            int index = range.from;
+            for (T value : values.subList(range.from, range.to)) {
+                if (predicate.test(value)) {
+                    keep[index] = true;
+                    count++;
+                }
+                index++;
+            }
+            return count;
+        });
+        return compact(threads, values, keep, counts);
+    }
+
+    /**
+     * Copies the flagged elements into a single array, every thread writing at the offset of its range.
+     * The counts must come from a {@link #processRanges} call with the same {@code threads} and list size,
+     * so that both calls split the list identically and counts are indexed by {@link Range#part}.
+     */
+    private <T> List<T> compact(
+            int threads,
+            List<? extends T> values,
+            boolean[] keep,
+            List<Integer> counts
+    ) throws InterruptedException {
+        int[] offsets = new int[counts.size() + 1];
+        for (int i = 0; i < counts.size(); i++) {
+            offsets[i + 1] = offsets[i] + counts.get(i);
+        }
+        Object[] result = new Object[offsets[counts.size()]];
+        processRanges(threads, values.size(), range -> {
+            int offset = offsets[range.part];
+            int index = range.from;
+            for (T value : values.subList(range.from, range.to)) {
+                if (keep[index]) {
+                    result[offset++] = value;
+                }
+                index++;
+            }
+            return null;
+        });
+        return asList(result);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> asList(Object[] array) {
+        return Collections.unmodifiableList((List<T>) Arrays.asList(array));
     }
 
     /**
@@ -250,12 +806,14 @@ public class IterativeParallelism implements ListIP {
     @Override
     public <T, U> List<U> map(int threads, List<? extends T> values, Function<? super T, ? extends U> f) throws InterruptedException {
         Objects.requireNonNull(f, "function must not be null");
-        return processInParallel(
-                threads,
-                values,
-                part -> part.stream().map(x -> (U) f.apply(x)).toList()
-        ).stream()
-                .flatMap(Collection::stream)
-                .toList();
+        Object[] result = new Object[values.size()];
+        processRanges(threads, values.size(), range -> {
+            int index = range.from;
+            for (T value : values.subList(range.from, range.to)) {
+                result[index++] = f.apply(value);
+            }
+            return null;
+        });
+        return asList(result);
     }
 }
\ No newline at end of file
@@ -4,45 +4,129 @@ import java.util.List;
 import java.util.function.Function;
 
 /**
- * Represents a job that processes a subset of items by applying a given function and storing the results.
+ * Represents a job that repeatedly claims chunks of items from a shared {@link ChunkCursor},
+ * applies a given function to them and stores the results at the same indices.
  * Implements {@link Runnable} to be executed by a thread in a parallel mapper.
  */
 public class Job<T, R> implements Runnable {
     private final List<? extends T> items;
     private final Function<? super T, ? extends R> f;
     private final List<R> result;
+    private final ChunkCursor cursor;
     private final DoneMonitor monitor;
+    private final ChunkConsumer<? super R> consumer;
+    private final CancellationToken token;
 
     /**
-     * Constructs a new {@code Job} with the specified items, function, result list, and monitor.
+     * Constructs a new {@code Job} with the specified items, function, result list, cursor and monitor.
      *
      * @param items   the list of items to process
      * @param f       the function to apply to each item
      * @param result  the list to store the results
+     * @param cursor  the cursor shared by all jobs processing the same items
      * @param monitor the monitor to track completion and exceptions
      */
-    public Job(List<? extends T> items, Function<? super T, ? extends R> f, List<R> result, DoneMonitor monitor) {
+    public Job(
+            List<? extends T> items,
+            Function<? super T, ? extends R> f,
+            List<R> result,
+            ChunkCursor cursor,
+            DoneMonitor monitor
+    ) {
+        this(items, f, result, cursor, monitor, null);
+    }
+
+    /**
+     * Constructs a new {@code Job} that additionally passes the results of every chunk completed
+     * without exceptions to the specified consumer.
+     *
+     * @param items    the list of items to process
+     * @param f        the function to apply to each item
+     * @param result   the list to store the results
+     * @param cursor   the cursor shared by all jobs processing the same items
+     * @param monitor  the monitor to track completion and exceptions
+     * @param consumer the consumer of completed chunks, or {@code null}
+     */
+    public Job(
+            List<? extends T> items,
+            Function<? super T, ? extends R> f,
+            List<R> result,
+            ChunkCursor cursor,
+            DoneMonitor monitor,
+            ChunkConsumer<? super R> consumer
+    ) {
+        this(items, f, result, cursor, monitor, consumer, null);
+    }
+
+    /**
+     * Constructs a new {@code Job} that additionally skips the items cancelled by the specified token,
+     * using item indices as token positions.
+     *
+     * @param items    the list of items to process
+     * @param f        the function to apply to each item
+     * @param result   the list to store the results
+     * @param cursor   the cursor shared by all jobs processing the same items
+     * @param monitor  the monitor to track completion and exceptions
+     * @param consumer the consumer of completed chunks, or {@code null}
+     * @param token    the cancellation token, or {@code null}
+     */
+    public Job(
+            List<? extends T> items,
+            Function<? super T, ? extends R> f,
+            List<R> result,
+            ChunkCursor cursor,
+            DoneMonitor monitor,
+            ChunkConsumer<? super R> consumer,
+            CancellationToken token
+    ) {
         this.items = items;
         this.f = f;
         this.result = result;
+        this.cursor = cursor;
         this.monitor = monitor;
+        this.consumer = consumer;
+        this.token = token;
     }
 
     /**
-     * Executes the job by applying the function to each item in the input list and storing the results.
-     * Any runtime exceptions are collected and reported to the monitor. Notifies the monitor when the job is complete.
+     * Executes the job by claiming chunks until the cursor is drained, applying the function to each claimed item
+     * and storing the results. Stops early once the cursor is cancelled, and stops claiming chunks
+     * once the token cancels an item, without stopping other jobs at earlier items.
+     * Any runtime exceptions are collected and reported to the monitor.
+     * Notifies the monitor when the job is complete.
      */
     @Override
     public void run() {
         RuntimeException exception = null;
-        for (int i = 0; i < items.size(); i++) {
-            try {
-                result.set(i, f.apply(items.get(i)));
-            } catch (RuntimeException e) {
-                if (exception != null) {
-                    exception.addSuppressed(e);
-                } else {
-                    exception = e;
+        long chunk;
+        while ((chunk = cursor.claim()) != -1) {
+            int start = ChunkCursor.start(chunk);
+            int end = ChunkCursor.end(chunk);
+            boolean failed = false;
+            for (int i = start; i < end; i++) {
+                if (cursor.isCancelled()) {
+                    failed = true;
+                    break;
+                }
+                if (token != null && token.isCancelled(i)) {
+                    // Chunks are claimed in order, so only later items are left unclaimed;
+                    // earlier items still running in other jobs may hold an earlier match
+                    cursor.drain();
+                    failed = true;
+                    break;
+                }
+                try {
+                    result.set(i, f.apply(items.get(i)));
+                } catch (RuntimeException e) {
+                    failed = true;
+                    exception = addException(exception, e);
+                }
+            }
+            if (consumer != null && !failed) {
+                try {
+                    consumer.accept(start, result.subList(start, end));
+                } catch (RuntimeException e) {
+                    exception = addException(exception, e);
                 }
             }
         }
@@ -51,4 +135,23 @@ public class Job<T, R> implements Runnable {
         }
         monitor.addPart();
     }
-}
\ No newline at end of file
+
+    /**
+     * Completes the job without running it, reporting the specified exception to the monitor.
+     * Used for jobs that will never run because their mapper is closed.
+     *
+     * @param e the exception to report
+     */
+    public void abort(RuntimeException e) {
+        monitor.addException(e);
+        monitor.addPart();
+    }
+
+    private static RuntimeException addException(RuntimeException exception, RuntimeException e) {
+        if (exception == null) {
+            return e;
+        }
+        exception.addSuppressed(e);
+        return exception;
+    }
+}
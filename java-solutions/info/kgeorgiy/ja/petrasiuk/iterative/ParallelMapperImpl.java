@@ -3,51 +3,136 @@ package info.kgeorgiy.ja.petrasiuk.iterative;
 import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
 
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Function;
 
 /**
- * Implements parallel mapping of a function over a list of items using a thread pool.
- * The class manages a fixed number of worker threads that process tasks concurrently.
+ * Implements parallel mapping of a function over a list of items using a work-stealing thread pool.
+ * Every worker owns a deque of jobs: submission pushes to the deques without locking,
+ * and idle workers steal jobs from the tails of other workers' deques.
+ * A worker taking a job while others are still queued wakes another idle worker, so a wake-up
+ * consumed by a worker that found a job on its own is passed on rather than lost.
  */
 public class ParallelMapperImpl implements ParallelMapper {
-    private final Queue<Job<?, ?>> jobs = new ArrayDeque<>();
-    private final List<Thread> threads = new ArrayList<>();
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final List<Worker> workers = new ArrayList<>();
+    private final Queue<Worker> idle = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger nextWorker = new AtomicInteger();
     private volatile boolean isClosed = false;
 
+    private final class Worker implements Runnable {
+        private final Deque<Job<?, ?>> jobs = new ConcurrentLinkedDeque<>();
+        private final int index;
+        private final Thread thread;
+
+        Worker(int index) {
+            this.index = index;
+            this.thread = new Thread(this);
+        }
+
+        @Override
+        public void run() {
+            while (!isClosed) {
+                Job<?, ?> job = findJob();
+                if (job == null) {
+                    idle.add(this);
+                    job = findJob();
+                    if (job == null) {
+                        // Bounded as a safeguard: a missed wake-up only delays queued jobs by the bound
+                        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                        Thread.interrupted();
+                    }
+                    idle.remove(this);
+                }
+                if (job != null) {
+                    if (hasQueuedJobs()) {
+                        wakeThief();
+                    }
+                    job.run();
+                }
+            }
+        }
+
+        private Job<?, ?> findJob() {
+            Job<?, ?> job = jobs.pollFirst();
+            for (int i = 1; job == null && i < workers.size(); i++) {
+                job = workers.get((index + i) % workers.size()).jobs.pollLast();
+            }
+            return job;
+        }
+    }
+
     /**
      * Constructs a new {@code ParallelMapperImpl} with the specified number of worker threads.
-     * Each thread processes tasks from a shared job queue until the mapper is closed.
+     * Each thread processes jobs from its own deque, stealing from other workers when it runs out,
+     * until the mapper is closed.
      *
      * @param threadsCount the number of worker threads to create
      * @throws IllegalArgumentException if {@code threadsCount} is less than 1
      */
     public ParallelMapperImpl(int threadsCount) {
+        if (threadsCount < 1) {
+            throw new IllegalArgumentException("At least one thread is required: " + threadsCount);
+        }
         for (int i = 0; i < threadsCount; i++) {
-            Thread worker = new Thread(() -> {
-                while (!isClosed) {
-                    Job<?, ?> job;
-                    synchronized (jobs) {
-                        while (jobs.isEmpty() && !isClosed) {
-                            try {
-                                jobs.wait();
-                            } catch (InterruptedException ignored) {
-                            }
-                        }
-                        job = jobs.poll();
-                    }
-                    if (job != null) {
-                        job.run();
-                    }
-                }
-            });
-            threads.add(worker);
-            worker.start();
+            workers.add(new Worker(i));
+        }
+        workers.forEach(worker -> worker.thread.start());
+    }
+
+    private void submit(Job<?, ?> job) {
+        Worker target = workers.get(Math.floorMod(nextWorker.getAndIncrement(), workers.size()));
+        target.jobs.addLast(job);
+        if (isClosed) {
+            // Missed by the draining in close(), which happens after closing
+            abortQueuedJobs();
+            return;
+        }
+        LockSupport.unpark(target.thread);
+        wakeThief();
+    }
+
+    private void wakeThief() {
+        Worker thief = idle.poll();
+        if (thief != null) {
+            LockSupport.unpark(thief.thread);
+        }
+    }
+
+    private boolean hasQueuedJobs() {
+        for (Worker worker : workers) {
+            if (!worker.jobs.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Completes every queued job with a {@link CancellationException}, so that no caller waits
+     * for jobs that will never run.
+     */
+    private void abortQueuedJobs() {
+        for (Worker worker : workers) {
+            Job<?, ?> job;
+            while ((job = worker.jobs.pollFirst()) != null) {
+                job.abort(new CancellationException("Mapper is closed"));
+            }
         }
     }
 
     /**
      * Applies the specified function to each item in the input list in parallel, returning a list
      * of results in the same order as the input list.
+     * Items are claimed dynamically in chunks that shrink as the work drains,
+     * so a few expensive items do not stall a whole fixed slice.
      *
      * @param <T>   the type of the input items
      * @param <R>   the type of the results
@@ -60,19 +145,41 @@ public class ParallelMapperImpl implements ParallelMapper {
      */
     @Override
     public <T, R> List<R> map(Function<? super T, ? extends R> f, List<? extends T> items) throws InterruptedException {
+        return map(f, items, null);
+    }
+
+    /**
+     * Applies the specified function to each item in the input list in parallel, skipping the items
+     * cancelled by the token. Item indices are used as token positions, so a function reporting
+     * {@link CancellationToken#found(int)} stops processing of all later items.
+     * <p>
+     * A match never stops items before it: an item is skipped only if a match at an earlier position
+     * has been reported before the item is started, and items are always processed up to and including
+     * the earliest match, even if a later match is reported first. So after the call,
+     * every position up to {@link CancellationToken#firstFound()} holds its result.
+     * {@link CancellationToken#cancel()} skips all items not yet started.
+     *
+     * @param <T>   the type of the input items
+     * @param <R>   the type of the results
+     * @param f     the function to apply to each item
+     * @param items the list of items to process
+     * @param token the cancellation token, or {@code null}
+     * @return a list containing the results of applying the function to each item, with {@code null}
+     * at the positions of skipped items
+     * @throws InterruptedException  if the current thread is interrupted while waiting for completion
+     * @throws IllegalStateException if the mapper has been closed
+     * @throws RuntimeException      if an exception occurs during task execution
+     */
+    public <T, R> List<R> map(
+            Function<? super T, ? extends R> f,
+            List<? extends T> items,
+            CancellationToken token
+    ) throws InterruptedException {
         if (isClosed) {
             throw new IllegalStateException("Mapper is closed");
         }
         List<R> result = new ArrayList<>(Collections.nCopies(items.size(), null));
-        DoneMonitor monitor = new DoneMonitor(threads.size());
-        for (int i = 0; i < threads.size(); i++) {
-            final int start = i * items.size() / threads.size();
-            final int end = (i + 1) * items.size() / threads.size();
-            synchronized (jobs) {
-                jobs.add(new Job<T, R>(items.subList(start, end), f, result.subList(start, end), monitor));
-                jobs.notify();
-            }
-        }
+        DoneMonitor monitor = submitJobs(f, items, result, new ChunkCursor(items.size(), workers.size(), 1), null, token);
         monitor.waitUntilDone();
         RuntimeException exception = monitor.getException();
         if (exception != null) {
@@ -81,9 +188,99 @@ public class ParallelMapperImpl implements ParallelMapper {
         return result;
     }
 
+    /**
+     * Starts applying the specified function to each item in the input list in parallel
+     * without waiting for completion.
+     * Cancelling the returned future stops processing of the items not yet started.
+     *
+     * @param <T>   the type of the input items
+     * @param <R>   the type of the results
+     * @param f     the function to apply to each item
+     * @param items the list of items to process
+     * @return a future of the list of results in the same order as the input list,
+     * completed exceptionally if an exception occurs during task execution
+     * @throws IllegalStateException if the mapper has been closed
+     */
+    public <T, R> CompletableFuture<List<R>> mapAsync(Function<? super T, ? extends R> f, List<? extends T> items) {
+        List<R> result = new ArrayList<>(Collections.nCopies(items.size(), null));
+        return startAsync(f, items, result, null, result);
+    }
+
+    /**
+     * Starts applying the specified function to each item in the input list in parallel, delivering
+     * results to the consumer chunk by chunk as soon as each chunk is complete.
+     * Chunks may be delivered out of order and concurrently.
+     * Cancelling the returned future stops processing of the items not yet started.
+     *
+     * @param <T>      the type of the input items
+     * @param <R>      the type of the results
+     * @param f        the function to apply to each item
+     * @param items    the list of items to process
+     * @param consumer the consumer of completed chunks
+     * @return a future completed when all chunks are delivered,
+     * or exceptionally if an exception occurs during task execution or delivery
+     * @throws IllegalStateException if the mapper has been closed
+     */
+    public <T, R> CompletableFuture<Void> mapStreaming(
+            Function<? super T, ? extends R> f,
+            List<? extends T> items,
+            ChunkConsumer<? super R> consumer
+    ) {
+        Objects.requireNonNull(consumer, "consumer must not be null");
+        return startAsync(f, items, new ArrayList<>(Collections.nCopies(items.size(), null)), consumer, null);
+    }
+
+    private <T, R, V> CompletableFuture<V> startAsync(
+            Function<? super T, ? extends R> f,
+            List<? extends T> items,
+            List<R> result,
+            ChunkConsumer<? super R> consumer,
+            V value
+    ) {
+        if (isClosed) {
+            throw new IllegalStateException("Mapper is closed");
+        }
+        // Completed with the final value directly: cancelling a dependent stage would not reach the cursor
+        CompletableFuture<V> future = new CompletableFuture<>();
+        ChunkCursor cursor = new ChunkCursor(items.size(), workers.size(), 1);
+        future.whenComplete((ignored, e) -> {
+            if (e instanceof CancellationException) {
+                cursor.cancel();
+            }
+        });
+        DoneMonitor monitor = submitJobs(f, items, result, cursor, consumer, null);
+        monitor.whenDone(() -> {
+            RuntimeException exception = monitor.getException();
+            if (exception != null) {
+                future.completeExceptionally(exception);
+            } else {
+                future.complete(value);
+            }
+        });
+        return future;
+    }
+
+    private <T, R> DoneMonitor submitJobs(
+            Function<? super T, ? extends R> f,
+            List<? extends T> items,
+            List<R> result,
+            ChunkCursor cursor,
+            ChunkConsumer<? super R> consumer,
+            CancellationToken token
+    ) {
+        int jobs = Math.min(workers.size(), items.size());
+        DoneMonitor monitor = new DoneMonitor(jobs);
+        for (int i = 0; i < jobs; i++) {
+            submit(new Job<T, R>(items, f, result, cursor, monitor, consumer, token));
+        }
+        return monitor;
+    }
+
     /**
      * Closes the mapper, stopping all worker threads and preventing further task submissions.
      * This method interrupts all threads and waits for them to terminate.
+     * Jobs still queued are not run: their calls fail and their futures complete exceptionally
+     * with a {@link CancellationException}.
      * Once closed, the mapper cannot be reused.
      */
     @Override
@@ -92,20 +289,17 @@ public class ParallelMapperImpl implements ParallelMapper {
             throw new IllegalStateException("Mapper is already closed");
         }
         isClosed = true;
-        synchronized (jobs) {
-            jobs.notifyAll();
-        }
-        threads.forEach(Thread::interrupt);
-        for (Thread thread : threads) {
+        workers.forEach(worker -> worker.thread.interrupt());
+        for (Worker worker : workers) {
             while (true) {
                 try {
-                    thread.join();
+                    worker.thread.join();
                     break;
                 } catch (InterruptedException ignored) {
                     // :NOTE: Thread.currentThread().interrupt();
                 }
             }
         }
-
+        abortQueuedJobs();
     }
-}
\ No newline at end of file
+}
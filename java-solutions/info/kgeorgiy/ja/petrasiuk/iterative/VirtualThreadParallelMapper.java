@@ -0,0 +1,112 @@
+package info.kgeorgiy.ja.petrasiuk.iterative;
+
+import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Implements parallel mapping by running every application of the function on its own virtual thread.
+ * Suited for I/O-bound functions: the number of items processed at once is bounded only by
+ * a configurable concurrency limit shared by all {@code map} calls, not by a number of platform threads.
+ */
+public class VirtualThreadParallelMapper implements ParallelMapper {
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore permits;
+    private volatile boolean isClosed = false;
+
+    /**
+     * Constructs a new {@code VirtualThreadParallelMapper} allowing at most {@code concurrency}
+     * function applications in flight at any moment.
+     *
+     * @param concurrency the maximum number of concurrently processed items
+     * @throws IllegalArgumentException if {@code concurrency} is less than 1
+     */
+    public VirtualThreadParallelMapper(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency limit should be positive: " + concurrency);
+        }
+        this.permits = new Semaphore(concurrency);
+    }
+
+    /**
+     * Applies the specified function to each item in the input list on virtual threads, returning a list
+     * of results in the same order as the input list. The calling thread blocks while the concurrency limit
+     * is reached.
+     *
+     * @param <T>   the type of the input items
+     * @param <R>   the type of the results
+     * @param f     the function to apply to each item
+     * @param items the list of items to process
+     * @return a list containing the results of applying the function to each item
+     * @throws InterruptedException  if the current thread is interrupted while submitting or waiting for completion
+     * @throws IllegalStateException if the mapper has been closed
+     * @throws RuntimeException      if an exception occurs during task execution
+     */
+    @Override
+    public <T, R> List<R> map(Function<? super T, ? extends R> f, List<? extends T> items) throws InterruptedException {
+        if (isClosed) {
+            throw new IllegalStateException("Mapper is closed");
+        }
+        List<R> result = new ArrayList<>(Collections.nCopies(items.size(), null));
+        DoneMonitor monitor = new DoneMonitor(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            final int index = i;
+            permits.acquire();
+            try {
+                executor.execute(() -> {
+                    try {
+                        result.set(index, f.apply(items.get(index)));
+                    } catch (RuntimeException e) {
+                        monitor.addException(e);
+                    } finally {
+                        permits.release();
+                        monitor.addPart();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                throw new IllegalStateException("Mapper is closed", e);
+            }
+        }
+        monitor.waitUntilDone();
+        RuntimeException exception = monitor.getException();
+        if (exception != null) {
+            throw exception;
+        }
+        return result;
+    }
+
+    /**
+     * Closes the mapper, interrupting running tasks and waiting for them to terminate.
+     * Once closed, the mapper cannot be reused.
+     */
+    @Override
+    public void close() {
+        if (isClosed) {
+            throw new IllegalStateException("Mapper is already closed");
+        }
+        isClosed = true;
+        executor.shutdownNow();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (executor.awaitTermination(1, TimeUnit.DAYS)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package info.kgeorgiy.ja.petrasiuk.iterative.test;
+
+import info.kgeorgiy.ja.petrasiuk.iterative.CancellationToken;
+import info.kgeorgiy.ja.petrasiuk.iterative.ParallelMapperImpl;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for short-circuiting ParallelMapperImpl functionality
+ */
+public class ParallelMapperImplTest {
+    private static final List<Integer> ITEMS = IntStream.range(0, 100).boxed().toList();
+
+    @Test
+    void testEarlierMatchBeatsLaterMatch() throws InterruptedException {
+        // With two workers the second chunk holds the later match and reaches it first
+        for (int run = 0; run < 5; run++) {
+            try (ParallelMapperImpl mapper = new ParallelMapperImpl(2)) {
+                CancellationToken token = new CancellationToken();
+                List<Integer> result = mapper.map(item -> {
+                    sleep();
+                    if (item == 20 || item == 40) {
+                        token.found(item);
+                    }
+                    return item;
+                }, ITEMS, token);
+
+                assertEquals(20, token.firstFound());
+                for (int i = 0; i <= 20; i++) {
+                    assertEquals(i, result.get(i), "Item before the first match was skipped: " + i);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testCancelledTokenSkipsAllItems() throws InterruptedException {
+        try (ParallelMapperImpl mapper = new ParallelMapperImpl(2)) {
+            CancellationToken token = new CancellationToken();
+            token.cancel();
+            List<Integer> result = mapper.map(item -> item, ITEMS, token);
+
+            assertTrue(result.stream().allMatch(item -> item == null));
+            assertEquals(-1, token.firstFound());
+        }
+    }
+
+    @Test
+    void testCloseCompletesQueuedJobs() throws InterruptedException, ExecutionException {
+        ParallelMapperImpl mapper = new ParallelMapperImpl(2);
+        List<CompletableFuture<List<Integer>>> futures = ITEMS.stream()
+                .map(item -> mapper.mapAsync(value -> {
+                    sleep();
+                    return value;
+                }, List.of(item)))
+                .toList();
+        mapper.close();
+
+        for (CompletableFuture<List<Integer>> future : futures) {
+            try {
+                future.get(1, TimeUnit.SECONDS);
+            } catch (CancellationException ignored) {
+                // Still queued when the mapper was closed
+            } catch (TimeoutException e) {
+                fail("Queued job was dropped on close");
+            }
+        }
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package info.kgeorgiy.ja.petrasiuk.walk;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Tree hash mode: files larger than one chunk are split into fixed-size chunks hashed in parallel,
+ * and the chunk digests are combined pairwise into a Merkle root. Smaller files are hashed as usual.
+ * Optionally the chunk digests of every tree-hashed file are saved into a sidecar directory.
+ */
+class ChunkedHasher implements Closeable {
+    private static final int sidecarMagic = 0x5741434b;
+
+    private final HashAlgorithm algorithm;
+    private final long chunkSize;
+    private final Path sidecars;
+    private final ExecutorService executor;
+    private final WalkMetrics metrics;
+
+    ChunkedHasher(HashAlgorithm algorithm, long chunkSize, int threads, Path sidecars, WalkMetrics metrics) {
+        this.algorithm = algorithm;
+        this.metrics = metrics;
+        this.chunkSize = chunkSize;
+        this.sidecars = sidecars;
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    long hash(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size <= chunkSize) {
+                HashAlgorithm.Hasher hasher = FileHasher.hasher(algorithm);
+                metrics.addBytes(FileHasher.update(channel, hasher));
+                return hasher.digest();
+            }
+            long[] leaves = hashChunks(channel, size);
+            metrics.addBytes(size);
+            if (sidecars != null) {
+                writeSidecar(path, size, leaves);
+            }
+            return merkleRoot(leaves);
+        }
+    }
+
+    private long[] hashChunks(FileChannel channel, long size) throws IOException {
+        List<Future<Long>> futures = new ArrayList<>();
+        for (long position = 0; position < size; position += chunkSize) {
+            long start = position;
+            long length = Math.min(chunkSize, size - position);
+            futures.add(executor.submit(() -> {
+                HashAlgorithm.Hasher hasher = FileHasher.hasher(algorithm);
+                FileHasher.updateRange(channel, start, length, hasher);
+                return hasher.digest();
+            }));
+        }
+        long[] leaves = new long[futures.size()];
+        try {
+            for (int i = 0; i < leaves.length; i++) {
+                leaves[i] = futures.get(i).get();
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while hashing chunks");
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IllegalStateException("Unexpected error while hashing chunks", e.getCause());
+        }
+        return leaves;
+    }
+
+    private long merkleRoot(long[] leaves) {
+        HashAlgorithm.Hasher hasher = FileHasher.hasher(algorithm);
+        ByteBuffer pair = ByteBuffer.allocate(2 * Long.BYTES);
+        long[] level = leaves;
+        while (level.length > 1) {
+            long[] next = new long[(level.length + 1) / 2];
+            for (int i = 0; i < next.length; i++) {
+                if (2 * i + 1 == level.length) {
+                    next[i] = level[2 * i];
+                } else {
+                    pair.clear();
+                    pair.putLong(level[2 * i]).putLong(level[2 * i + 1]).flip();
+                    hasher.update(pair);
+                    next[i] = hasher.digest();
+                }
+            }
+            level = next;
+        }
+        return level[0];
+    }
+
+    private void writeSidecar(Path path, long size, long[] leaves) throws IOException {
+        String absolute = path.toAbsolutePath().normalize().toString();
+        HashAlgorithm.Hasher hasher = FileHasher.hasher(algorithm);
+        hasher.update(ByteBuffer.wrap(absolute.getBytes(StandardCharsets.UTF_8)));
+        Path sidecar = sidecars.resolve(HexFormat.of().toHexDigits(hasher.digest()) + ".chunks");
+
+        Files.createDirectories(sidecars);
+        Path temp = Files.createTempFile(sidecars, sidecar.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(sidecarMagic);
+                out.writeUTF(algorithm.name());
+                out.writeUTF(absolute);
+                out.writeLong(size);
+                out.writeLong(chunkSize);
+                out.writeInt(leaves.length);
+                for (long leaf : leaves) {
+                    out.writeLong(leaf);
+                }
+            }
+            Walk.moveAtomically(temp, sidecar);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
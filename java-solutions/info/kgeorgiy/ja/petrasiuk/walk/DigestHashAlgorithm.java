@@ -0,0 +1,59 @@
+package info.kgeorgiy.ja.petrasiuk.walk;
+
+import java.nio.ByteBuffer;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Adapts a JCA {@link MessageDigest} to {@link HashAlgorithm}, truncating the digest to its first 8 bytes.
+ */
+class DigestHashAlgorithm implements HashAlgorithm {
+    private final String name;
+    private final String jcaName;
+
+    DigestHashAlgorithm(String name, String jcaName) {
+        this.name = name;
+        this.jcaName = jcaName;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public Hasher newHasher() {
+        try {
+            MessageDigest digest = MessageDigest.getInstance(jcaName);
+            byte[] output = new byte[Math.max(digest.getDigestLength(), Long.BYTES)];
+            return new Hasher() {
+                @Override
+                public void update(ByteBuffer buffer) {
+                    digest.update(buffer);
+                }
+
+                @Override
+                public long digest() {
+                    try {
+                        digest.digest(output, 0, output.length);
+                    } catch (DigestException e) {
+                        throw new IllegalStateException("Digest buffer is too small for " + jcaName, e);
+                    }
+                    long result = 0;
+                    for (int i = 0; i < Long.BYTES; i++) {
+                        result = result << 8 | output[i] & 0xFF;
+                    }
+                    return result;
+                }
+
+                @Override
+                public void reset() {
+                    digest.reset();
+                }
+            };
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Message digest is not available: " + jcaName, e);
+        }
+    }
+}
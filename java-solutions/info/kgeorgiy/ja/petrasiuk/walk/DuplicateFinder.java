@@ -0,0 +1,111 @@
+package info.kgeorgiy.ja.petrasiuk.walk;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.ToLongFunction;
+
+/**
+ * Finds clusters of files with equal contents. Files are grouped by size first,
+ * only files with colliding sizes get a quick hash of their first and last blocks,
+ * and only files colliding on that get a full hash.
+ */
+class DuplicateFinder {
+    private static final int edgeBlockSize = 4096;
+
+    private final HashAlgorithm algorithm;
+    private final ExecutorService executor;
+    private final Map<Long, List<Path>> bySize = new HashMap<>();
+    private final Set<Object> files = new HashSet<>();
+
+    record Cluster(long hash, List<Path> paths) {}
+
+    DuplicateFinder(HashAlgorithm algorithm, ExecutorService executor) {
+        this.algorithm = algorithm;
+        this.executor = executor;
+    }
+
+    /**
+     * Adds a regular file, unless the same file has already been added under this or another path,
+     * as happens with overlapping roots, repeated inputs and hard links.
+     * Files are identified by their {@link BasicFileAttributes#fileKey() file key}, or by their real path
+     * on file systems without file keys.
+     */
+    void add(Path path, BasicFileAttributes attrs) throws IOException {
+        Object key = attrs.fileKey() != null ? attrs.fileKey() : path.toRealPath();
+        if (attrs.size() > 0 && files.add(key)) {
+            bySize.computeIfAbsent(attrs.size(), s -> new ArrayList<>()).add(path);
+        }
+    }
+
+    /**
+     * Computes duplicate clusters, largest files first. Files that fail to hash are reported and skipped.
+     *
+     * @param fullHash full content hash, throwing {@link WalkException} on failure
+     */
+    List<Cluster> clusters(ToLongFunction<Path> fullHash) {
+        List<Long> sizes = bySize.entrySet().stream()
+                .filter(entry -> entry.getValue().size() > 1)
+                .map(Map.Entry::getKey)
+                .sorted(Comparator.reverseOrder())
+                .toList();
+
+        List<Cluster> clusters = new ArrayList<>();
+        for (long size : sizes) {
+            List<Path> sameSize = bySize.get(size);
+            Collection<List<Path>> candidates = size <= 2L * edgeBlockSize
+                    ? List.of(sameSize)
+                    : group(sameSize, path -> edgeHash(path, size)).values();
+            for (List<Path> candidate : candidates) {
+                if (candidate.size() < 2) {
+                    continue;
+                }
+                group(candidate, fullHash).forEach((hash, paths) -> {
+                    if (paths.size() > 1) {
+                        clusters.add(new Cluster(hash, paths));
+                    }
+                });
+            }
+        }
+        return clusters;
+    }
+
+    private long edgeHash(Path path, long size) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            HashAlgorithm.Hasher hasher = FileHasher.hasher(algorithm);
+            FileHasher.updateRange(channel, 0, edgeBlockSize, hasher);
+            FileHasher.updateRange(channel, size - edgeBlockSize, edgeBlockSize, hasher);
+            return hasher.digest();
+        } catch (IOException | SecurityException e) {
+            throw WalkException.whileHashing(path, e);
+        }
+    }
+
+    private Map<Long, List<Path>> group(List<Path> paths, ToLongFunction<Path> hash) {
+        Map<Long, List<Path>> groups = new LinkedHashMap<>();
+        List<Future<Long>> futures = executor == null
+                ? null
+                : paths.stream().map(path -> executor.submit(() -> hash.applyAsLong(path))).toList();
+        for (int i = 0; i < paths.size(); i++) {
+            Path path = paths.get(i);
+            try {
+                long value = futures == null ? hash.applyAsLong(path) : HashPipeline.getUninterruptibly(futures.get(i));
+                groups.computeIfAbsent(value, v -> new ArrayList<>()).add(path);
+            } catch (WalkException e) {
+                System.err.println("Walk error: " + e.getMessage());
+            } catch (ExecutionException e) {
+                if (!(e.getCause() instanceof WalkException walkException)) {
+                    throw new IllegalStateException("Unexpected error while hashing file: " + path, e.getCause());
+                }
+                System.err.println("Walk error: " + walkException.getMessage());
+            }
+        }
+        return groups;
+    }
+}
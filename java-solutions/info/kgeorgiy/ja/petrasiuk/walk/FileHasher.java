@@ -0,0 +1,110 @@
+package info.kgeorgiy.ja.petrasiuk.walk;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Feeds file contents into a {@link HashAlgorithm.Hasher} through NIO.
+ * Large files are mapped into memory segment by segment, smaller ones are read
+ * through a per-thread direct buffer, so no bytes are copied onto the heap.
+ */
+final class FileHasher {
+    private static final long mappedThreshold = 16L << 20;
+    private static final long mappedSegmentSize = 256L << 20;
+    private static final int bufferSize = 64 << 10;
+
+    private static final ThreadLocal<ByteBuffer> buffers =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(bufferSize));
+
+    private static final ThreadLocal<Map<HashAlgorithm, HashAlgorithm.Hasher>> hashers =
+            ThreadLocal.withInitial(IdentityHashMap::new);
+
+    private FileHasher() {
+    }
+
+    /**
+     * Returns the calling thread's hasher for the algorithm, reset to its initial state.
+     */
+    static HashAlgorithm.Hasher hasher(HashAlgorithm algorithm) {
+        HashAlgorithm.Hasher hasher = hashers.get().computeIfAbsent(algorithm, HashAlgorithm::newHasher);
+        hasher.reset();
+        return hasher;
+    }
+
+    /**
+     * Hashes the whole file, returning the number of bytes consumed.
+     */
+    static long update(Path path, HashAlgorithm.Hasher hasher) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return update(channel, hasher);
+        }
+    }
+
+    static long update(FileChannel channel, HashAlgorithm.Hasher hasher) throws IOException {
+        long size = channel.size();
+        if (size >= mappedThreshold) {
+            updateMapped(channel, size, hasher);
+            return size;
+        } else {
+            return updateBuffered(channel, hasher);
+        }
+    }
+
+    /**
+     * Hashes {@code length} bytes starting at {@code position} using positional reads,
+     * so several threads may hash different ranges of the same channel.
+     */
+    static void updateRange(FileChannel channel, long position, long length, HashAlgorithm.Hasher hasher)
+            throws IOException {
+        ByteBuffer buffer = buffers.get();
+        long end = position + length;
+        while (position < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - position));
+            int read = channel.read(buffer, position);
+            if (read == -1) {
+                break;
+            }
+            position += read;
+            buffer.flip();
+            hasher.update(buffer);
+        }
+    }
+
+    /**
+     * Maps and hashes the file segment by segment, unmapping every segment as soon as it is hashed.
+     * A file truncated while mapped faults on access, which is reported as an {@link IOException}.
+     */
+    private static void updateMapped(FileChannel channel, long size, HashAlgorithm.Hasher hasher) throws IOException {
+        for (long position = 0; position < size; position += mappedSegmentSize) {
+            long length = Math.min(mappedSegmentSize, size - position);
+            try (Arena arena = Arena.ofConfined()) {
+                MemorySegment segment = channel.map(FileChannel.MapMode.READ_ONLY, position, length, arena);
+                hasher.update(segment.asByteBuffer());
+            } catch (InternalError e) {
+                throw new IOException("File was truncated while being hashed", e);
+            }
+        }
+    }
+
+    private static long updateBuffered(FileChannel channel, HashAlgorithm.Hasher hasher) throws IOException {
+        ByteBuffer buffer = buffers.get();
+        buffer.clear();
+        long total = 0;
+        int read;
+        while ((read = channel.read(buffer)) != -1) {
+            total += read;
+            buffer.flip();
+            hasher.update(buffer);
+            buffer.clear();
+        }
+        return total;
+    }
+}
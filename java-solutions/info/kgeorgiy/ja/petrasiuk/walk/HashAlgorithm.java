@@ -0,0 +1,72 @@
+package info.kgeorgiy.ja.petrasiuk.walk;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.stream.Stream;
+
+/**
+ * Algorithm producing 64-bit file fingerprints for {@link Walk} and {@link RecursiveWalk}.
+ * Besides the built-in algorithms, implementations are discovered through {@link ServiceLoader}.
+ */
+public interface HashAlgorithm {
+    /**
+     * Returns the name used to select this algorithm on the command line.
+     *
+     * @return the algorithm name
+     */
+    String name();
+
+    /**
+     * Creates a new hasher in its initial state.
+     *
+     * @return a fresh hasher
+     */
+    Hasher newHasher();
+
+    /**
+     * Incremental hash computation. Instances are not thread-safe.
+     */
+    interface Hasher {
+        /**
+         * Consumes all remaining bytes of the buffer.
+         *
+         * @param buffer the data to hash
+         */
+        void update(ByteBuffer buffer);
+
+        /**
+         * Completes the computation and resets the hasher to its initial state.
+         *
+         * @return the 64-bit fingerprint of the consumed data
+         */
+        long digest();
+
+        /**
+         * Discards any consumed data, returning the hasher to its initial state.
+         */
+        void reset();
+    }
+
+    /**
+     * Built-in algorithms, the first one being the default.
+     */
+    List<HashAlgorithm> builtIn = List.of(new DigestHashAlgorithm("sha-256", "SHA-256"), new XxHash64());
+
+    /**
+     * Finds an algorithm by its case-insensitive name.
+     *
+     * @param name the algorithm name
+     * @return the algorithm
+     * @throws IllegalArgumentException if no such algorithm is available
+     */
+    static HashAlgorithm forName(String name) {
+        return Stream.concat(
+                        builtIn.stream(),
+                        ServiceLoader.load(HashAlgorithm.class).stream().map(ServiceLoader.Provider::get)
+                )
+                .filter(algorithm -> algorithm.name().equalsIgnoreCase(name))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown hash algorithm: " + name));
+    }
+}
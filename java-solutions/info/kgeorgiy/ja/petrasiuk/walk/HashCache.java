@@ -0,0 +1,111 @@
+package info.kgeorgiy.ja.petrasiuk.walk;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persistent cache of file hashes keyed by absolute path, size, modification time and file key (inode).
+ * Only entries looked up or stored during the current run are saved back, so the cache is compacted
+ * on every {@link #save()}. The file is replaced atomically, a crash never leaves a partial cache behind.
+ */
+class HashCache {
+    private static final int magic = 0x5741484b;
+    private static final int version = 2;
+
+    private final Path file;
+    private final String scheme;
+    private final Map<String, Entry> previous;
+    private final Map<String, Entry> current = new ConcurrentHashMap<>();
+
+    private record Entry(long size, long modified, String key, long hash) {
+        static Entry of(BasicFileAttributes attrs, long hash) {
+            Object key = attrs.fileKey();
+            return new Entry(
+                    attrs.size(),
+                    attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS),
+                    key == null ? "" : key.toString(),
+                    hash
+            );
+        }
+
+        boolean matches(Entry other) {
+            return size == other.size && modified == other.modified && key.equals(other.key);
+        }
+    }
+
+    private HashCache(Path file, String scheme, Map<String, Entry> previous) {
+        this.file = file;
+        this.scheme = scheme;
+        this.previous = previous;
+    }
+
+    /**
+     * Loads the cache from {@code file}. A missing, corrupted or differently hashed cache is treated as empty.
+     */
+    static HashCache load(Path file, String scheme) {
+        Map<String, Entry> entries = new HashMap<>();
+        if (Files.exists(file)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                if (in.readInt() == magic && in.readInt() == version && in.readUTF().equals(scheme)) {
+                    int count = in.readInt();
+                    for (int i = 0; i < count; i++) {
+                        String path = in.readUTF();
+                        entries.put(path, new Entry(in.readLong(), in.readLong(), in.readUTF(), in.readLong()));
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Ignoring unreadable hash cache " + file + ": " + e.getMessage());
+                entries.clear();
+            }
+        }
+        return new HashCache(file, scheme, entries);
+    }
+
+    Long lookup(Path path, BasicFileAttributes attrs) {
+        String key = key(path);
+        Entry cached = previous.get(key);
+        if (cached == null || !cached.matches(Entry.of(attrs, cached.hash))) {
+            return null;
+        }
+        current.put(key, cached);
+        return cached.hash;
+    }
+
+    void store(Path path, BasicFileAttributes attrs, long hash) {
+        current.put(key(path), Entry.of(attrs, hash));
+    }
+
+    void save() throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(magic);
+                out.writeInt(version);
+                out.writeUTF(scheme);
+                out.writeInt(current.size());
+                for (Map.Entry<String, Entry> entry : current.entrySet()) {
+                    Entry value = entry.getValue();
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(value.size);
+                    out.writeLong(value.modified);
+                    out.writeUTF(value.key);
+                    out.writeLong(value.hash);
+                }
+            }
+            Walk.moveAtomically(temp, file);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static String key(Path path) {
+        return path.toAbsolutePath().normalize().toString();
+    }
+}
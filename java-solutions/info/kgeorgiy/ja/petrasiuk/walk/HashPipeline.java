@@ -0,0 +1,296 @@
+package info.kgeorgiy.ja.petrasiuk.walk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.*;
+
+/**
+ * Hashes submitted files, possibly concurrently, and writes results in submission order.
+ * With a single thread every file is hashed on the caller thread.
+ * When a {@link HashCache} is given, files with unchanged attributes are not read at all.
+ * In duplicates mode files are only collected, and clusters of equal files are written on {@link #finish()},
+ * separated by empty lines.
+ * Concurrent hashing reuses a fixed ring of {@link Slot} tasks, so nothing but the hashing itself allocates per file.
+ */
+class HashPipeline implements Closeable {
+    private static final int windowPerThread = 4;
+
+    final WalkOptions options;
+    final WalkMetrics metrics;
+    private final ResultWriter writer;
+    private final HashCache cache;
+    private final ChunkedHasher chunked;
+    private final DuplicateFinder duplicates;
+    private final ExecutorService executor;
+    private final int window;
+    private final Slot[] slots;
+    private int head;
+    private int pending;
+
+    HashPipeline(ResultWriter writer, WalkOptions options, HashCache cache, WalkMetrics metrics) {
+        this.options = options;
+        this.metrics = metrics;
+        this.writer = writer;
+        this.cache = cache;
+        this.chunked = options.chunkSize > 0
+                ? new ChunkedHasher(
+                        options.algorithm,
+                        options.chunkSize,
+                        options.chunkThreads,
+                        options.chunkSidecars == null ? null : Path.of(options.chunkSidecars),
+                        metrics)
+                : null;
+        int threads = options.threads;
+        if (threads > 1) {
+            this.window = threads * windowPerThread;
+            this.executor = options.duplicates
+                    ? Executors.newFixedThreadPool(threads)
+                    : new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(window + 1));
+            this.slots = new Slot[window + 1];
+            for (int i = 0; i < slots.length; i++) {
+                slots[i] = new Slot();
+            }
+        } else {
+            this.executor = null;
+            this.window = 0;
+            this.slots = null;
+        }
+        this.duplicates = options.duplicates ? new DuplicateFinder(options.algorithm, executor) : null;
+    }
+
+    void submit(Path path) throws IOException {
+        submit(path, null);
+    }
+
+    void submit(Path path, BasicFileAttributes attrs) throws IOException {
+        if (duplicates != null) {
+            try {
+                BasicFileAttributes resolved = resolve(path, attrs);
+                if (resolved.isRegularFile()) {
+                    duplicates.add(path, resolved);
+                }
+            } catch (IOException | SecurityException e) {
+                System.err.println("Walk error: " + WalkException.whileHashing(path, e).getMessage());
+            }
+        } else if (executor == null) {
+            long hash;
+            try {
+                hash = hash(path, attrs);
+            } catch (WalkException e) {
+                fail(path.toString(), e);
+                return;
+            }
+            writer.write(hash, path.toString());
+        } else {
+            executor.execute(enqueue(path.toString(), path, attrs));
+            drain();
+        }
+    }
+
+    void submitInvalid(String path) throws IOException {
+        if (duplicates != null) {
+            return;
+        }
+        if (executor == null) {
+            writer.write(Walk.invalidHash, path);
+        } else {
+            enqueue(path, null, null).complete(Walk.invalidHash, null, null);
+            drain();
+        }
+    }
+
+    void finish() throws IOException {
+        if (duplicates != null) {
+            boolean first = true;
+            for (DuplicateFinder.Cluster cluster : duplicates.clusters(path -> hash(path, null))) {
+                if (!first) {
+                    writer.writeSeparator();
+                }
+                first = false;
+                for (Path path : cluster.paths()) {
+                    writer.write(cluster.hash(), path.toString());
+                }
+            }
+        }
+        while (pending > 0) {
+            writeNext();
+        }
+        writer.finish();
+    }
+
+    private long hash(Path path, BasicFileAttributes attrs) {
+        try {
+            if (cache == null) {
+                return hashContent(path);
+            }
+            attrs = resolve(path, attrs);
+            Long cached = cache.lookup(path, attrs);
+            if (cached != null) {
+                metrics.cacheHit();
+                return cached;
+            }
+            long hash = hashContent(path);
+            cache.store(path, attrs, hash);
+            return hash;
+        } catch (IOException | SecurityException e) {
+            throw WalkException.whileHashing(path, e);
+        }
+    }
+
+    private static BasicFileAttributes resolve(Path path, BasicFileAttributes attrs) throws IOException {
+        return attrs == null || attrs.isSymbolicLink() ? Files.readAttributes(path, BasicFileAttributes.class) : attrs;
+    }
+
+    private long hashContent(Path path) throws IOException {
+        long started = System.nanoTime();
+        long hash = chunked == null ? Walk.hashFile(path, options.algorithm, metrics) : chunked.hash(path);
+        metrics.fileHashed(System.nanoTime() - started);
+        return hash;
+    }
+
+    private Slot enqueue(String name, Path path, BasicFileAttributes attrs) {
+        Slot slot = slots[(head + pending) % slots.length];
+        slot.prepare(name, path, attrs);
+        pending++;
+        metrics.hashQueue.incrementAndGet();
+        return slot;
+    }
+
+    private void drain() throws IOException {
+        while (pending > window) {
+            writeNext();
+        }
+    }
+
+    private void writeNext() throws IOException {
+        Slot next = slots[head];
+        head = (head + 1) % slots.length;
+        pending--;
+        metrics.hashQueue.decrementAndGet();
+        next.await();
+        String name = next.name;
+        long hash = next.hash;
+        WalkException failure = next.failure;
+        Throwable error = next.error;
+        next.prepare(null, null, null);
+        if (error != null) {
+            throw new IllegalStateException("Unexpected error while hashing file: " + name, error);
+        }
+        if (failure != null) {
+            fail(name, failure);
+        } else {
+            writer.write(hash, name);
+        }
+    }
+
+    private void fail(String path, WalkException e) throws IOException {
+        metrics.error();
+        writer.write(Walk.invalidHash, path);
+        System.err.println("Walk error: " + e.getMessage());
+    }
+
+    static <T> T getUninterruptibly(Future<T> future) throws ExecutionException {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Writes the results still pending in the window, unless the output has failed, and stops hashing threads.
+     */
+    @Override
+    public void close() {
+        try {
+            while (pending > 0) {
+                writeNext();
+            }
+        } catch (IOException e) {
+            metrics.hashQueue.addAndGet(-pending);
+            pending = 0;
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        if (chunked != null) {
+            chunked.close();
+        }
+    }
+
+    /**
+     * Reusable hashing task of the ring. The file is hashed on a pool thread,
+     * and the outcome is published to the caller thread by the slot monitor.
+     */
+    private final class Slot implements Runnable {
+        private String name;
+        private Path path;
+        private BasicFileAttributes attrs;
+        private long hash;
+        private WalkException failure;
+        private Throwable error;
+        private boolean done;
+
+        @Override
+        public void run() {
+            Path path;
+            BasicFileAttributes attrs;
+            synchronized (this) {
+                path = this.path;
+                attrs = this.attrs;
+                this.path = null;
+                this.attrs = null;
+            }
+            try {
+                complete(hash(path, attrs), null, null);
+            } catch (WalkException e) {
+                complete(Walk.invalidHash, e, null);
+            } catch (Throwable e) {
+                complete(Walk.invalidHash, null, e);
+            }
+        }
+
+        synchronized void prepare(String name, Path path, BasicFileAttributes attrs) {
+            this.name = name;
+            this.path = path;
+            this.attrs = attrs;
+            this.failure = null;
+            this.error = null;
+            this.done = false;
+        }
+
+        synchronized void complete(long hash, WalkException failure, Throwable error) {
+            this.hash = hash;
+            this.failure = failure;
+            this.error = error;
+            this.done = true;
+            notifyAll();
+        }
+
+        synchronized void await() {
+            boolean interrupted = false;
+            while (!done) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
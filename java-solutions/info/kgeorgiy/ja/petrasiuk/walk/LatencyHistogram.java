@@ -0,0 +1,55 @@
+package info.kgeorgiy.ja.petrasiuk.walk;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free log-linear histogram of durations in nanoseconds.
+ * Every power of two is split into four buckets, so percentiles are accurate within 25%.
+ */
+class LatencyHistogram {
+    private static final int subBuckets = 4;
+    private static final int subBucketBits = 2;
+
+    private final AtomicLongArray counts = new AtomicLongArray(Long.SIZE * subBuckets);
+
+    void record(long nanos) {
+        counts.incrementAndGet(index(Math.max(nanos, 1)));
+    }
+
+    /**
+     * Returns an upper bound of the given percentile, or zero when nothing was recorded.
+     *
+     * @param percentile percentile in {@code (0, 1]}
+     */
+    long percentile(double percentile) {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        long rank = (long) Math.ceil(percentile * total);
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank && seen > 0) {
+                return upperBound(i);
+            }
+        }
+        return 0;
+    }
+
+    private static int index(long value) {
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int sub = exponent < subBucketBits ? 0 : (int) (value >>> (exponent - subBucketBits)) & (subBuckets - 1);
+        return exponent * subBuckets + sub;
+    }
+
+    private static long upperBound(int index) {
+        int exponent = index / subBuckets;
+        int sub = index % subBuckets;
+        if (exponent < subBucketBits) {
+            return (1L << (exponent + 1)) - 1;
+        }
+        long width = 1L << (exponent - subBucketBits);
+        return ((long) (subBuckets + sub) << (exponent - subBucketBits)) + width - 1;
+    }
+}
@@ -0,0 +1,130 @@
+package info.kgeorgiy.ja.petrasiuk.walk;
+
+import java.io.IOException;
+import java.io.Serial;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Walks a file tree listing directories concurrently in a {@link ForkJoinPool}.
+ * Files are reported on the calling thread in the same depth-first order as
+ * {@link Files#walkFileTree(Path, java.nio.file.FileVisitor)} without following links,
+ * while listings of the directories ahead are produced in the background.
+ * At most {@value #prefetchPerThread} listings per thread may run ahead of the consumer,
+ * so memory stays bounded by the prefetch window and the current path rather than the whole tree.
+ * Directories outside the window are listed when the consumer reaches them.
+ * The walk stops at the first failure, like a visitor returning {@code TERMINATE}.
+ */
+class ParallelTreeWalker {
+    private static final int prefetchPerThread = 4;
+
+    private final int parallelism;
+    private final WalkMetrics metrics;
+    private final Semaphore prefetch;
+
+    private record Entry(Path path, BasicFileAttributes attrs, IOException failure, ListingTask directory) {}
+
+    private final class ListingTask extends RecursiveTask<List<Entry>> {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final transient Path directory;
+        private final boolean prefetched;
+
+        ListingTask(Path directory, boolean prefetched) {
+            this.directory = directory;
+            this.prefetched = prefetched;
+        }
+
+        @Override
+        protected List<Entry> compute() {
+            List<Entry> entries = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (Path child : stream) {
+                    entries.add(entry(child));
+                }
+            } catch (IOException e) {
+                return List.of(new Entry(directory, null, e, null));
+            } catch (DirectoryIteratorException e) {
+                entries.add(new Entry(directory, null, e.getCause(), null));
+            }
+            return entries;
+        }
+    }
+
+    ParallelTreeWalker(int parallelism, WalkMetrics metrics) {
+        this.parallelism = parallelism;
+        this.metrics = metrics;
+        this.prefetch = new Semaphore(parallelism * prefetchPerThread);
+    }
+
+    void walk(
+            Path root,
+            IOThrowableBiConsumer<Path, BasicFileAttributes> visitFile,
+            IOThrowableBiConsumer<Path, IOException> visitFileFailed
+    ) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            Entry rootEntry = pool.submit(() -> entry(root)).join();
+            Deque<Iterator<Entry>> stack = new ArrayDeque<>();
+            stack.push(List.of(rootEntry).iterator());
+            while (!stack.isEmpty()) {
+                Iterator<Entry> iterator = stack.peek();
+                if (!iterator.hasNext()) {
+                    stack.pop();
+                    continue;
+                }
+                Entry next = iterator.next();
+                if (next.failure != null) {
+                    visitFileFailed.accept(next.path, next.failure);
+                    return;
+                } else if (next.directory != null) {
+                    ListingTask listing = next.directory;
+                    if (!listing.prefetched) {
+                        pool.execute(listing);
+                    }
+                    stack.push(listing.join().iterator());
+                    if (listing.prefetched) {
+                        prefetch.release();
+                        metrics.traversalQueue.decrementAndGet();
+                    }
+                } else {
+                    visitFile.accept(next.path, next.attrs);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+            metrics.traversalQueue.set(0);
+        }
+    }
+
+    private Entry entry(Path path) {
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            return new Entry(path, null, e, null);
+        }
+        if (attrs.isDirectory()) {
+            ListingTask task = new ListingTask(path, prefetch.tryAcquire());
+            if (task.prefetched) {
+                metrics.traversalQueue.incrementAndGet();
+                task.fork();
+            }
+            return new Entry(path, attrs, null, task);
+        }
+        return new Entry(path, attrs, null, null);
+    }
+}
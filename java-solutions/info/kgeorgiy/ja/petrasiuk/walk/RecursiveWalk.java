@@ -1,32 +1,39 @@
 package info.kgeorgiy.ja.petrasiuk.walk;
 
 import java.io.IOException;
-import java.io.Writer;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 
 public class RecursiveWalk {
-    static void process(Path path, Writer writer) throws IOException {
+    static void process(Path path, HashPipeline pipeline) throws IOException {
+        if (pipeline.options.walkers > 1) {
+            new ParallelTreeWalker(pipeline.options.walkers, pipeline.metrics).walk(
+                    path,
+                    pipeline::submit,
+                    (failed, e) -> visitFileFailed(failed, e, pipeline)
+            );
+            return;
+        }
         Files.walkFileTree(path, new SimpleFileVisitor<>() {
             @Override
             public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) throws IOException {
-                try {
-                    Walk.process(path, writer);
-                } catch (WalkException e) {
-                    System.out.println("Walk error: " + e.getMessage());
-                }
+                pipeline.submit(path, attrs);
                 return FileVisitResult.CONTINUE;
             }
 
             @Override
             public FileVisitResult visitFileFailed(Path path, IOException e) throws IOException {
-                System.out.println("I/O error while hashing file: " + path + " " + e.getMessage());
-                Walk.writeResult(Walk.invalidHash, path.toString(), writer);
+                RecursiveWalk.visitFileFailed(path, e, pipeline);
                 return FileVisitResult.TERMINATE;
             }
         });
     }
 
+    private static void visitFileFailed(Path path, IOException e, HashPipeline pipeline) throws IOException {
+        System.out.println("I/O error while hashing file: " + path + " " + e.getMessage());
+        pipeline.submitInvalid(path.toString());
+    }
+
     public static void main(final String[] args) {
         Walk.preprocess(args, RecursiveWalk::process);
     }
@@ -0,0 +1,281 @@
+package info.kgeorgiy.ja.petrasiuk.walk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Output stage of the walk tools. Results are passed through a bounded ring of hashes and paths to a dedicated thread,
+ * which encodes them into a reusable direct buffer and writes it to a {@link FileChannel} in large batches:
+ * when the buffer fills up, at the end of output, and at most {@value #flushIntervalMillis} ms after
+ * the oldest buffered result, so that slow hashing does not turn into one write per line.
+ * Closing without {@link #finish()} still writes every queued result.
+ * Passing and encoding a result allocates nothing.
+ */
+class ResultWriter implements Closeable {
+    private static final int queueCapacity = 4096;
+    private static final int bufferSize = 256 << 10;
+    private static final long flushIntervalMillis = 1000;
+    private static final byte[] hexDigits = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] lineSeparator = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    private final FileChannel channel;
+    private final long[] hashes = new long[queueCapacity];
+    private final String[] paths = new String[queueCapacity];
+    private int head;
+    private int size;
+    private boolean ended;
+    private boolean stopped;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private char[] chars = new char[256];
+    private CharBuffer charBuffer = CharBuffer.wrap(chars);
+    private final Thread thread;
+    private volatile IOException failure;
+
+    ResultWriter(Path output) throws IOException {
+        this.channel = FileChannel.open(
+                output,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE
+        );
+        this.thread = new Thread(this::run, "walk-writer");
+        this.thread.start();
+    }
+
+    void write(long hash, String path) throws IOException {
+        enqueue(hash, path);
+    }
+
+    /**
+     * Writes an empty line, separating groups of results.
+     */
+    void writeSeparator() throws IOException {
+        enqueue(0, null);
+    }
+
+    private void enqueue(long hash, String path) throws IOException {
+        checkFailure();
+        synchronized (this) {
+            try {
+                while (size == queueCapacity && !stopped) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(path == null
+                        ? "Interrupted while writing separator"
+                        : "Interrupted while writing result for " + path);
+            }
+            if (stopped) {
+                checkFailure();
+                throw new IOException("Output is closed");
+            }
+            int tail = (head + size) % queueCapacity;
+            hashes[tail] = hash;
+            paths[tail] = path;
+            if (size++ == 0) {
+                notifyAll();
+            }
+        }
+    }
+
+    synchronized int queueDepth() {
+        return size;
+    }
+
+    /**
+     * Waits until every queued result is written.
+     */
+    void finish() throws IOException {
+        awaitEnd();
+        checkFailure();
+    }
+
+    private void awaitEnd() throws InterruptedIOException {
+        synchronized (this) {
+            ended = true;
+            notifyAll();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while finishing output");
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void run() {
+        long[] batchHashes = new long[queueCapacity];
+        String[] batchPaths = new String[queueCapacity];
+        long flushDeadline = 0;
+        try {
+            while (true) {
+                int count;
+                boolean last;
+                synchronized (this) {
+                    if (buffer.position() == 0) {
+                        while (size == 0 && !ended) {
+                            wait();
+                        }
+                        flushDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+                    } else {
+                        long remaining;
+                        while (size == 0 && !ended && (remaining = flushDeadline - System.nanoTime()) > 0) {
+                            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                        }
+                    }
+                    count = take(batchHashes, batchPaths);
+                    last = ended && size == 0;
+                }
+                for (int i = 0; i < count; i++) {
+                    encode(batchHashes[i], batchPaths[i]);
+                }
+                Arrays.fill(batchPaths, 0, count, null);
+                if (last) {
+                    flushBuffer();
+                    return;
+                }
+                if (System.nanoTime() - flushDeadline >= 0) {
+                    flushBuffer();
+                }
+            }
+        } catch (IOException e) {
+            failure = e;
+        } catch (InterruptedException ignored) {
+            // Closed before finishing
+        } finally {
+            synchronized (this) {
+                stopped = true;
+                Arrays.fill(paths, null);
+                size = 0;
+                notifyAll();
+            }
+        }
+    }
+
+    private int take(long[] batchHashes, String[] batchPaths) {
+        int count = size;
+        int first = Math.min(count, queueCapacity - head);
+        System.arraycopy(hashes, head, batchHashes, 0, first);
+        System.arraycopy(paths, head, batchPaths, 0, first);
+        System.arraycopy(hashes, 0, batchHashes, first, count - first);
+        System.arraycopy(paths, 0, batchPaths, first, count - first);
+        Arrays.fill(paths, head, head + first, null);
+        Arrays.fill(paths, 0, count - first, null);
+        head = (head + count) % queueCapacity;
+        size = 0;
+        if (count == queueCapacity) {
+            notifyAll();
+        }
+        return count;
+    }
+
+    private void encode(long hash, String path) throws IOException {
+        if (path == null) {
+            if (buffer.remaining() < lineSeparator.length) {
+                flushBuffer();
+            }
+            buffer.put(lineSeparator);
+            return;
+        }
+        if (buffer.remaining() < 2 * Long.BYTES + 1) {
+            flushBuffer();
+        }
+        for (int shift = Long.SIZE - 4; shift >= 0; shift -= 4) {
+            buffer.put(hexDigits[(int) (hash >>> shift) & 0xF]);
+        }
+        buffer.put((byte) ' ');
+
+        CharBuffer text = chars(path);
+        encoder.reset();
+        CoderResult coderResult;
+        while ((coderResult = encoder.encode(text, buffer, true)).isOverflow()) {
+            flushBuffer();
+        }
+        if (coderResult.isError()) {
+            coderResult.throwException();
+        }
+        while (encoder.flush(buffer).isOverflow()) {
+            flushBuffer();
+        }
+
+        if (buffer.remaining() < lineSeparator.length) {
+            flushBuffer();
+        }
+        buffer.put(lineSeparator);
+    }
+
+    private CharBuffer chars(String path) {
+        if (path.length() > chars.length) {
+            chars = new char[Math.max(path.length(), chars.length * 2)];
+            charBuffer = CharBuffer.wrap(chars);
+        }
+        path.getChars(0, path.length(), chars, 0);
+        return charBuffer.clear().limit(path.length());
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Writes every queued result and closes the output. Failures of the output have already been reported
+     * by {@link #write} or {@link #finish()}, so they are not rethrown here.
+     * The writer thread is interrupted only if waiting for it is interrupted.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (thread.isAlive()) {
+                awaitEnd();
+            }
+        } catch (InterruptedIOException e) {
+            stop();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void stop() {
+        if (thread.isAlive()) {
+            thread.interrupt();
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    thread.join();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
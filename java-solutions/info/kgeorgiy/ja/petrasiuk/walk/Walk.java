@@ -2,81 +2,84 @@ package info.kgeorgiy.ja.petrasiuk.walk;
 
 import java.io.*;
 import java.nio.file.*;
-import java.security.DigestInputStream;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.util.Arrays;
-import java.util.HexFormat;
 
 public class Walk {
-    static final String invalidHash = "0".repeat(16);
+    static final long invalidHash = 0;
 
-    private static final int hashBufferSize = 8192;
-
-    static void writeResult(String hashString, String stringPath, Writer writer) throws IOException {
-        writer.write(hashString + " " + stringPath + System.lineSeparator());
+    static long hashFile(Path path, HashAlgorithm algorithm, WalkMetrics metrics) throws IOException {
+        HashAlgorithm.Hasher hasher = FileHasher.hasher(algorithm);
+        metrics.addBytes(FileHasher.update(path, hasher));
+        return hasher.digest();
     }
 
-    static String hashFile(Path path) throws IOException, NoSuchAlgorithmException {
-        try (
-                InputStream fileStream = Files.newInputStream(path);
-                DigestInputStream digestStream = new DigestInputStream(fileStream, MessageDigest.getInstance("SHA-256"))
-        ) {
-            byte[] buffer = new byte[hashBufferSize];
-            while (digestStream.read(buffer) != -1) {}
-            MessageDigest digest = digestStream.getMessageDigest();
-            return HexFormat.of().formatHex(Arrays.copyOfRange(digest.digest(), 0, 8));
+    static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
         }
     }
 
-    static void process(Path path, Writer writer) throws WalkException, IOException {
-        String stringHash;
-        try {
-            stringHash = hashFile(path);
-        } catch (IOException | SecurityException | NoSuchAlgorithmException e) {
-            writeResult(invalidHash, path.toString(), writer);
-            String errorType = e.getClass().getSimpleName();
-            throw new WalkException(
-                    String.format("%s while hashing file: %s: %s", errorType, path, e.getMessage()),
-                    e
-            );
-        }
-        writeResult(stringHash, path.toString(), writer);
+    static void process(Path path, HashPipeline pipeline) throws IOException {
+        pipeline.submit(path);
     }
 
-    static void preprocess(final String[] args, IOThrowableBiConsumer<Path, Writer> processor) {
+    static void preprocess(final String[] args, IOThrowableBiConsumer<Path, HashPipeline> processor) {
         if (args == null) {
             System.err.println("Arguments missing");
-        } else if (args.length != 2) {
-            System.err.println("Wrong number of arguments. Should be 2.");
+        } else if (args.length < 2) {
+            System.err.println("Wrong number of arguments. Should be at least 2.");
         } else if (args[0] == null ||  args[1] == null) {
             System.err.println("Arguments can't be null. Should be path");
         } else {
             try {
-                final Path outputPath = Path.of(args[1]);
+                final WalkOptions options = WalkOptions.parse(args);
+                final Path outputPath = Path.of(options.output);
                 final Path outputParentPath = outputPath.getParent();
                 if (outputParentPath == null) {
                     throw new InvalidPathException(outputPath.toString(), "Output path's parent is null");
                 }
                 Files.createDirectories(outputPath.getParent());
+                final HashCache cache = options.cache == null ? null : HashCache.load(Path.of(options.cache), options.scheme());
                 try (
-                        BufferedReader reader = Files.newBufferedReader(Path.of(args[0]));
-                        Writer writer = Files.newBufferedWriter(outputPath)
+                        WalkMetrics metrics = new WalkMetrics();
+                        BufferedReader reader = Files.newBufferedReader(Path.of(options.input));
+                        ResultWriter writer = new ResultWriter(outputPath);
+                        HashPipeline pipeline = new HashPipeline(writer, options, cache, metrics)
                 ) {
+                    metrics.outputQueue(writer::queueDepth);
+                    metrics.start(options.progressSeconds, options.jmx);
                     String line;
+                    boolean outputFailed = false;
                     while ((line = reader.readLine()) != null) {
                         try {
-                            processor.accept(Path.of(line), writer);
-                        } catch (InvalidPathException e) {
-                            System.err.println("Invalid path to hashing file: " + e.getMessage());
-                            writeResult(invalidHash, line, writer);
-                        } catch (WalkException e) {
-                            System.err.println("Walk error: " + e.getMessage());
+                            try {
+                                processor.accept(Path.of(line), pipeline);
+                            } catch (InvalidPathException e) {
+                                System.err.println("Invalid path to hashing file: " + e.getMessage());
+                                pipeline.submitInvalid(line);
+                            }
                         } catch (IOException e) {
                             System.err.println("I/O error with output file: " + e.getMessage());
+                            outputFailed = true;
                             break;
                         }
                     }
+                    if (!outputFailed) {
+                        try {
+                            pipeline.finish();
+                        } catch (IOException e) {
+                            System.err.println("I/O error with output file: " + e.getMessage());
+                            outputFailed = true;
+                        }
+                    }
+                    if (!outputFailed && cache != null) {
+                        try {
+                            cache.save();
+                        } catch (IOException e) {
+                            System.err.println("I/O error while saving hash cache: " + e.getMessage());
+                        }
+                    }
                 } catch (IOException e) {
                     System.err.println("I/O error with input file: " + e.getMessage());
                 } catch (InvalidPathException e) {
@@ -86,6 +89,8 @@ public class Walk {
                 System.err.println("No such file: " + e.getMessage());
             } catch (InvalidPathException e) {
                 System.err.println("Invalid path to output file: " + e.getMessage());
+            } catch (IllegalArgumentException e) {
+                System.err.println("Wrong arguments: " + e.getMessage());
             } catch (SecurityException e) {
                 System.err.println("Security error: " + e.getMessage());
             } catch (IOException e) {
@@ -97,4 +102,4 @@ public class Walk {
     public static void main(final String[] args) {
         preprocess(args, Walk::process);
     }
-}
\ No newline at end of file
+}
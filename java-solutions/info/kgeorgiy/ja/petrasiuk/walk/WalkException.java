@@ -1,7 +1,16 @@
 package info.kgeorgiy.ja.petrasiuk.walk;
 
+import java.nio.file.Path;
+
 public class WalkException extends RuntimeException {
     public WalkException(String message,  Throwable cause) {
         super(message, cause);
     }
+
+    static WalkException whileHashing(Path path, Exception e) {
+        return new WalkException(
+                String.format("%s while hashing file: %s: %s", e.getClass().getSimpleName(), path, e.getMessage()),
+                e
+        );
+    }
 }
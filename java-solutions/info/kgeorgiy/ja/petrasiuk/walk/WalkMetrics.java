@@ -0,0 +1,170 @@
+package info.kgeorgiy.ja.petrasiuk.walk;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Counters and gauges of a walk, reported as a periodic stderr status line and through JMX.
+ */
+class WalkMetrics implements WalkMetricsMXBean, AutoCloseable {
+    private static final String objectName = "info.kgeorgiy.ja.petrasiuk.walk:type=WalkMetrics";
+
+    private final long started = System.nanoTime();
+    private final LongAdder files = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    final AtomicInteger traversalQueue = new AtomicInteger();
+    final AtomicInteger hashQueue = new AtomicInteger();
+    private volatile IntSupplier outputQueue = () -> 0;
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    private ScheduledExecutorService reporter;
+    private ObjectName registered;
+    private long lastFiles;
+    private long lastBytes;
+    private long lastReport = started;
+
+    void start(int progressSeconds, boolean jmx) {
+        if (progressSeconds > 0) {
+            reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "walk-progress");
+                thread.setDaemon(true);
+                return thread;
+            });
+            reporter.scheduleAtFixedRate(this::report, progressSeconds, progressSeconds, TimeUnit.SECONDS);
+        }
+        if (jmx) {
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                ObjectName name = new ObjectName(objectName);
+                server.registerMBean(this, name);
+                registered = name;
+            } catch (JMException e) {
+                System.err.println("Cannot register walk metrics MBean: " + e.getMessage());
+            }
+        }
+    }
+
+    void outputQueue(IntSupplier depth) {
+        outputQueue = depth;
+    }
+
+    void fileHashed(long nanos) {
+        files.increment();
+        latency.record(nanos);
+    }
+
+    void cacheHit() {
+        files.increment();
+        cacheHits.increment();
+    }
+
+    void addBytes(long count) {
+        bytes.add(count);
+    }
+
+    void error() {
+        errors.increment();
+    }
+
+    private synchronized void report() {
+        long now = System.nanoTime();
+        long currentFiles = files.sum();
+        long currentBytes = bytes.sum();
+        double seconds = Math.max(now - lastReport, 1) / 1e9;
+        System.err.printf(
+                "files %d (%.0f/s), %.1f MiB (%.1f MiB/s), errors %d, queues: traversal %d, hash %d, output %d, "
+                        + "hash latency p50 %.2f ms p99 %.2f ms%n",
+                currentFiles, (currentFiles - lastFiles) / seconds,
+                currentBytes / 1048576.0, (currentBytes - lastBytes) / 1048576.0 / seconds,
+                errors.sum(), getTraversalQueueDepth(), getHashQueueDepth(), getOutputQueueDepth(),
+                getHashLatencyP50Millis(), getHashLatencyP99Millis()
+        );
+        lastFiles = currentFiles;
+        lastBytes = currentBytes;
+        lastReport = now;
+    }
+
+    @Override
+    public void close() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            report();
+        }
+        if (registered != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(registered);
+            } catch (JMException e) {
+                System.err.println("Cannot unregister walk metrics MBean: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public long getFilesHashed() {
+        return files.sum();
+    }
+
+    @Override
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    @Override
+    public long getBytesHashed() {
+        return bytes.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public double getFilesPerSecond() {
+        return files.sum() / elapsedSeconds();
+    }
+
+    @Override
+    public double getBytesPerSecond() {
+        return bytes.sum() / elapsedSeconds();
+    }
+
+    @Override
+    public int getTraversalQueueDepth() {
+        return traversalQueue.get();
+    }
+
+    @Override
+    public int getHashQueueDepth() {
+        return hashQueue.get();
+    }
+
+    @Override
+    public int getOutputQueueDepth() {
+        return outputQueue.getAsInt();
+    }
+
+    @Override
+    public double getHashLatencyP50Millis() {
+        return latency.percentile(0.5) / 1e6;
+    }
+
+    @Override
+    public double getHashLatencyP99Millis() {
+        return latency.percentile(0.99) / 1e6;
+    }
+
+    private double elapsedSeconds() {
+        return Math.max(System.nanoTime() - started, 1) / 1e9;
+    }
+}
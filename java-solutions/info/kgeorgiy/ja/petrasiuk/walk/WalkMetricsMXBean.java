@@ -0,0 +1,61 @@
+package info.kgeorgiy.ja.petrasiuk.walk;
+
+/**
+ * Management interface of a running walk, registered when the {@code --jmx} option is given.
+ */
+public interface WalkMetricsMXBean {
+    /**
+     * @return number of files whose hash was computed or taken from the cache
+     */
+    long getFilesHashed();
+
+    /**
+     * @return number of files whose hash was taken from the cache
+     */
+    long getCacheHits();
+
+    /**
+     * @return number of bytes read while hashing
+     */
+    long getBytesHashed();
+
+    /**
+     * @return number of files that failed to hash
+     */
+    long getErrors();
+
+    /**
+     * @return average number of files hashed per second since the start of the walk
+     */
+    double getFilesPerSecond();
+
+    /**
+     * @return average number of bytes hashed per second since the start of the walk
+     */
+    double getBytesPerSecond();
+
+    /**
+     * @return number of listed directories not yet consumed by the traversal
+     */
+    int getTraversalQueueDepth();
+
+    /**
+     * @return number of files submitted for hashing and not yet written
+     */
+    int getHashQueueDepth();
+
+    /**
+     * @return number of results waiting for the output thread
+     */
+    int getOutputQueueDepth();
+
+    /**
+     * @return median per-file hashing latency in milliseconds
+     */
+    double getHashLatencyP50Millis();
+
+    /**
+     * @return 99th percentile of per-file hashing latency in milliseconds
+     */
+    double getHashLatencyP99Millis();
+}
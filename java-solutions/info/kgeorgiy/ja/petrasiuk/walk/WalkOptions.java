@@ -0,0 +1,69 @@
+package info.kgeorgiy.ja.petrasiuk.walk;
+
+class WalkOptions {
+    final String input;
+    final String output;
+    int threads = 1;
+    int walkers = 1;
+    String cache;
+    HashAlgorithm algorithm = HashAlgorithm.builtIn.get(0);
+    long chunkSize;
+    int chunkThreads = Runtime.getRuntime().availableProcessors();
+    String chunkSidecars;
+    boolean duplicates;
+    int progressSeconds;
+    boolean jmx;
+
+    private WalkOptions(String input, String output) {
+        this.input = input;
+        this.output = output;
+    }
+
+    static WalkOptions parse(String[] args) {
+        WalkOptions options = new WalkOptions(args[0], args[1]);
+        for (int i = 2; i < args.length; i++) {
+            String option = args[i];
+            if (option == null) {
+                throw new IllegalArgumentException("Options can't be null");
+            }
+            switch (option) {
+                case "--threads" -> options.threads = positive(args, ++i, option);
+                case "--walkers" -> options.walkers = positive(args, ++i, option);
+                case "--algorithm" -> options.algorithm = HashAlgorithm.forName(value(args, ++i, option));
+                case "--cache" -> options.cache = value(args, ++i, option);
+                case "--chunk-size" -> options.chunkSize = (long) positive(args, ++i, option) << 20;
+                case "--chunk-threads" -> options.chunkThreads = positive(args, ++i, option);
+                case "--chunk-sidecars" -> options.chunkSidecars = value(args, ++i, option);
+                case "--duplicates" -> options.duplicates = true;
+                case "--progress" -> options.progressSeconds = positive(args, ++i, option);
+                case "--jmx" -> options.jmx = true;
+                default -> throw new IllegalArgumentException("Unknown option: " + option);
+            }
+        }
+        return options;
+    }
+
+    String scheme() {
+        return algorithm.name() + "/64" + (chunkSize > 0 ? "/tree:" + chunkSize : "");
+    }
+
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length || args[index] == null) {
+            throw new IllegalArgumentException("Missing value for " + option);
+        }
+        return args[index];
+    }
+
+    private static int positive(String[] args, int index, String option) {
+        String value = value(args, index, option);
+        try {
+            int result = Integer.parseInt(value);
+            if (result < 1) {
+                throw new IllegalArgumentException(option + " should be positive: " + value);
+            }
+            return result;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(option + " should be a number: " + value);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package info.kgeorgiy.ja.petrasiuk.walk;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Pure Java streaming implementation of XXH64 with zero seed.
+ */
+class XxHash64 implements HashAlgorithm {
+    private static final long P1 = 0x9E3779B185EBCA87L;
+    private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long P3 = 0x165667B19E3779F9L;
+    private static final long P4 = 0x85EBCA77C2B2AE63L;
+    private static final long P5 = 0x27D4EB2F165667C5L;
+    private static final int stripeSize = 32;
+
+    @Override
+    public String name() {
+        return "xxh64";
+    }
+
+    @Override
+    public Hasher newHasher() {
+        return new XxHasher();
+    }
+
+    private static long round(long acc, long input) {
+        return Long.rotateLeft(acc + input * P2, 31) * P1;
+    }
+
+    private static long mergeRound(long acc, long value) {
+        return (acc ^ round(0, value)) * P1 + P4;
+    }
+
+    private static final class XxHasher implements Hasher {
+        private final ByteBuffer tail = ByteBuffer.allocate(stripeSize).order(ByteOrder.LITTLE_ENDIAN);
+        private long v1;
+        private long v2;
+        private long v3;
+        private long v4;
+        private long total;
+
+        XxHasher() {
+            reset();
+        }
+
+        @Override
+        public void reset() {
+            v1 = P1 + P2;
+            v2 = P2;
+            v3 = 0;
+            v4 = -P1;
+            total = 0;
+            tail.clear();
+        }
+
+        private void stripe(ByteBuffer data) {
+            v1 = round(v1, data.getLong());
+            v2 = round(v2, data.getLong());
+            v3 = round(v3, data.getLong());
+            v4 = round(v4, data.getLong());
+        }
+
+        @Override
+        public void update(ByteBuffer buffer) {
+            ByteBuffer data = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+            buffer.position(buffer.limit());
+            total += data.remaining();
+            if (tail.position() > 0) {
+                int length = Math.min(tail.remaining(), data.remaining());
+                tail.put(data.slice(data.position(), length));
+                data.position(data.position() + length);
+                if (tail.hasRemaining()) {
+                    return;
+                }
+                tail.flip();
+                stripe(tail);
+                tail.clear();
+            }
+            while (data.remaining() >= stripeSize) {
+                stripe(data);
+            }
+            tail.put(data);
+        }
+
+        @Override
+        public long digest() {
+            long h;
+            if (total >= stripeSize) {
+                h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+                h = mergeRound(h, v1);
+                h = mergeRound(h, v2);
+                h = mergeRound(h, v3);
+                h = mergeRound(h, v4);
+            } else {
+                h = P5;
+            }
+            h += total;
+
+            tail.flip();
+            while (tail.remaining() >= 8) {
+                h = Long.rotateLeft(h ^ round(0, tail.getLong()), 27) * P1 + P4;
+            }
+            if (tail.remaining() >= 4) {
+                h = Long.rotateLeft(h ^ (tail.getInt() & 0xFFFFFFFFL) * P1, 23) * P2 + P3;
+            }
+            while (tail.hasRemaining()) {
+                h = Long.rotateLeft(h ^ (tail.get() & 0xFFL) * P5, 11) * P1;
+            }
+
+            h ^= h >>> 33;
+            h *= P2;
+            h ^= h >>> 29;
+            h *= P3;
+            h ^= h >>> 32;
+            reset();
+            return h;
+        }
+    }
+}
@@ -9,6 +9,7 @@ module info.kgeorgiy.ja.petrasiuk {
     requires info.kgeorgiy.java.advanced.crawler;
     requires info.kgeorgiy.java.advanced.hello;
     requires java.rmi;
+    requires java.management;
     requires org.junit.platform.engine;
     requires org.junit.platform.launcher;
     exports info.kgeorgiy.ja.petrasiuk.implementor;
@@ -17,4 +18,5 @@ module info.kgeorgiy.ja.petrasiuk {
     exports info.kgeorgiy.ja.petrasiuk.student;
     exports info.kgeorgiy.ja.petrasiuk.lambda;
     exports info.kgeorgiy.ja.petrasiuk.bank;
+    uses info.kgeorgiy.ja.petrasiuk.walk.HashAlgorithm;
 }
\ No newline at end of file